@@ -0,0 +1,124 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of {@link KubernetesCredentialsProviderConfiguration}, compiled once every time the
+ * configuration is saved, so lookups don't parse the configured strings.
+ */
+public final class CompiledConfiguration {
+
+    private final Set<String> globalNamespaces;
+    private final String labelSelector;
+    private final boolean namespacedWatch;
+    private final boolean metadataOnlyWatch;
+    private final boolean credentialsTypeLabelRequired;
+    private final int workerCount;
+    private final boolean adaptiveWorkers;
+
+    private CompiledConfiguration(Set<String> globalNamespaces, String labelSelector, boolean namespacedWatch,
+                                  boolean metadataOnlyWatch, boolean credentialsTypeLabelRequired,
+                                  int workerCount, boolean adaptiveWorkers) {
+        this.globalNamespaces = globalNamespaces;
+        this.labelSelector = labelSelector;
+        this.namespacedWatch = namespacedWatch;
+        this.metadataOnlyWatch = metadataOnlyWatch;
+        this.credentialsTypeLabelRequired = credentialsTypeLabelRequired;
+        this.workerCount = workerCount;
+        this.adaptiveWorkers = adaptiveWorkers;
+    }
+
+    public static CompiledConfiguration compile(KubernetesCredentialsProviderConfiguration configuration) {
+        return compile(configuration.getGlobalNamespaces(), configuration.getLabelSelector(),
+                configuration.isNamespacedWatch(), configuration.isMetadataOnlyWatch(),
+                configuration.isCredentialsTypeLabelRequired(), configuration.getWorkerCount(),
+                configuration.isAdaptiveWorkers());
+    }
+
+    static CompiledConfiguration compile(String globalNamespaces, String labelSelector, boolean namespacedWatch,
+                                         boolean metadataOnlyWatch, boolean credentialsTypeLabelRequired,
+                                         int workerCount, boolean adaptiveWorkers) {
+        Set<String> namespaces = new LinkedHashSet<>();
+        if (globalNamespaces != null) {
+            for (String namespace : globalNamespaces.split(",")) {
+                if (StringUtils.isNotBlank(namespace)) {
+                    namespaces.add(namespace.trim());
+                }
+            }
+        }
+
+        return new CompiledConfiguration(Collections.unmodifiableSet(namespaces),
+                StringUtils.defaultIfEmpty(StringUtils.trimToEmpty(labelSelector), null),
+                namespacedWatch,
+                metadataOnlyWatch,
+                credentialsTypeLabelRequired,
+                Math.max(1, workerCount),
+                adaptiveWorkers);
+    }
+
+    /**
+     * @return namespaces whose secrets can be used globally.
+     */
+    public Set<String> getGlobalNamespaces() {
+        return globalNamespaces;
+    }
+
+    /**
+     * @return the trimmed label selector, or null if there is none.
+     */
+    public String getLabelSelector() {
+        return labelSelector;
+    }
+
+    public boolean isNamespacedWatch() {
+        return namespacedWatch;
+    }
+
+    public boolean isMetadataOnlyWatch() {
+        return metadataOnlyWatch;
+    }
+
+    public boolean isCredentialsTypeLabelRequired() {
+        return credentialsTypeLabelRequired;
+    }
+
+    /**
+     * @return number of reconciler workers, or the maximum number of workers in adaptive mode.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public boolean isAdaptiveWorkers() {
+        return adaptiveWorkers;
+    }
+
+    /**
+     * @return true if informers built with this configuration cannot serve the other configuration,
+     * i.e. they would list or watch different secrets.
+     */
+    public boolean requiresNewWatches(CompiledConfiguration other) {
+        return !Objects.equals(labelSelector, other.labelSelector)
+                || metadataOnlyWatch != other.metadataOnlyWatch
+                || credentialsTypeLabelRequired != other.credentialsTypeLabelRequired;
+    }
+
+    /**
+     * @return true if the workers of the controller are different with the other configuration.
+     */
+    public boolean affectsWorkers(CompiledConfiguration other) {
+        return workerCount != other.workerCount || adaptiveWorkers != other.adaptiveWorkers;
+    }
+
+    /**
+     * @return true if the namespaces to watch might be different with the other configuration.
+     */
+    public boolean affectsWatchedNamespaces(CompiledConfiguration other) {
+        return namespacedWatch != other.namespacedWatch || !globalNamespaces.equals(other.globalNamespaces);
+    }
+}
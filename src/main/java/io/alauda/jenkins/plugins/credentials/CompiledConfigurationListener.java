@@ -0,0 +1,21 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+
+/**
+ * Receives the {@link CompiledConfiguration} every time {@link KubernetesCredentialsProviderConfiguration} is saved,
+ * so only the work affected by the change needs to be done.
+ */
+public interface CompiledConfigurationListener extends ExtensionPoint {
+
+    /**
+     * @param previous the configuration before the change.
+     * @param current the configuration after the change.
+     */
+    void onChanged(CompiledConfiguration previous, CompiledConfiguration current);
+
+    static ExtensionList<CompiledConfigurationListener> all() {
+        return ExtensionList.lookup(CompiledConfigurationListener.class);
+    }
+}
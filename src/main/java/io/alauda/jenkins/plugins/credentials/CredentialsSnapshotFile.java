@@ -0,0 +1,181 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import io.alauda.jenkins.plugins.credentials.watch.SecretSummary;
+import io.alauda.jenkins.plugins.credentials.watch.WatchState;
+import io.kubernetes.client.openapi.JSON;
+import io.kubernetes.client.openapi.models.V1Secret;
+import jenkins.model.Jenkins;
+import jenkins.security.CryptoConfidentialKey;
+
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encrypted file of converted credentials and the states of the informers, so credentials can be served right after
+ * Jenkins restarts and the informers can resume watching instead of listing all secrets again.
+ * <p>
+ * The file starts with a magic number, a format version and the IV, followed by the deflated and encrypted
+ * content. Secrets and credentials are written as length-prefixed JSON and XML.
+ */
+public class CredentialsSnapshotFile {
+
+    private static final int MAGIC = 0x41435053;
+    private static final int VERSION = 1;
+    private static final CryptoConfidentialKey KEY = new CryptoConfidentialKey(CredentialsSnapshotFile.class, "key");
+
+    private final File file;
+    private final JSON json;
+
+    public CredentialsSnapshotFile(File file, JSON json) {
+        this.file = file;
+        this.json = json;
+    }
+
+    public static class Content {
+        private final String fingerprint;
+        private final Map<String, WatchState> watchStates;
+        private final Map<String, CredentialsWithMetadata> credentials;
+
+        /**
+         * @param fingerprint identifies the configuration the content was written with, the content only can be
+         *                    restored with the same configuration.
+         * @param watchStates states of the informers keyed by namespace and selector.
+         * @param credentials credentials keyed by credentials ID.
+         */
+        public Content(String fingerprint, Map<String, WatchState> watchStates, Map<String, CredentialsWithMetadata> credentials) {
+            this.fingerprint = fingerprint;
+            this.watchStates = watchStates;
+            this.credentials = credentials;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public Map<String, WatchState> getWatchStates() {
+            return watchStates;
+        }
+
+        public Map<String, CredentialsWithMetadata> getCredentials() {
+            return credentials;
+        }
+    }
+
+    /**
+     * Write the content to a temporary file, then replace the file with it.
+     */
+    public void write(Content content) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        byte[] iv = KEY.newIv();
+        try (DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(iv.length);
+            header.write(iv);
+
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new CipherOutputStream(header, KEY.encrypt(iv))));
+            out.writeUTF(content.getFingerprint());
+
+            out.writeInt(content.getWatchStates().size());
+            for (Map.Entry<String, WatchState> entry : content.getWatchStates().entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().getResourceVersion());
+                out.writeInt(entry.getValue().getSecrets().size());
+                for (V1Secret secret : entry.getValue().getSecrets()) {
+                    V1Secret metadata = new V1Secret()
+                            .apiVersion(secret.getApiVersion())
+                            .kind(secret.getKind())
+                            .metadata(secret.getMetadata())
+                            .type(secret.getType());
+                    writeBytes(out, json.serialize(metadata).getBytes(StandardCharsets.UTF_8));
+                    out.writeUTF(((SecretSummary) secret).getContentDigest());
+                }
+            }
+
+            out.writeInt(content.getCredentials().size());
+            for (Map.Entry<String, CredentialsWithMetadata> entry : content.getCredentials().entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeBytes(out, Jenkins.XSTREAM2.toXML(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            out.close();
+        }
+
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the content, or null if the file doesn't exist or was written in another format.
+     */
+    public Content read() throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                return null;
+            }
+            byte[] iv = new byte[header.readInt()];
+            header.readFully(iv);
+
+            DataInputStream in = new DataInputStream(new InflaterInputStream(new CipherInputStream(header, KEY.decrypt(iv))));
+            String fingerprint = in.readUTF();
+
+            int watchCount = in.readInt();
+            Map<String, WatchState> watchStates = new HashMap<>(watchCount);
+            for (int i = 0; i < watchCount; i++) {
+                String key = in.readUTF();
+                String resourceVersion = in.readUTF();
+                int secretCount = in.readInt();
+                List<V1Secret> secrets = new ArrayList<>(secretCount);
+                for (int j = 0; j < secretCount; j++) {
+                    V1Secret metadata = json.deserialize(new String(readBytes(in), StandardCharsets.UTF_8), V1Secret.class);
+                    secrets.add(SecretSummary.restore(metadata, in.readUTF()));
+                }
+                watchStates.put(key, new WatchState(resourceVersion, secrets));
+            }
+
+            int credentialsCount = in.readInt();
+            Map<String, CredentialsWithMetadata> credentials = new HashMap<>(credentialsCount);
+            for (int i = 0; i < credentialsCount; i++) {
+                String id = in.readUTF();
+                credentials.put(id, (CredentialsWithMetadata) Jenkins.XSTREAM2.fromXML(new String(readBytes(in), StandardCharsets.UTF_8)));
+            }
+
+            return new Content(fingerprint, watchStates, credentials);
+        }
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,39 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the converted credentials periodically, so they can be served right after Jenkins restarts.
+ */
+@Extension
+public class CredentialsSnapshotTask extends AsyncPeriodicWork {
+    private static final Logger logger = LoggerFactory.getLogger(CredentialsSnapshotTask.class);
+
+    public CredentialsSnapshotTask() {
+        super("Kubernetes credentials snapshot task");
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        ExtensionList<KubernetesCredentialsProvider> credentialsProviders = ExtensionList.lookup(KubernetesCredentialsProvider.class);
+        if (credentialsProviders.size() == 0) {
+            logger.info("Unable to find KubernetesCredentialsProvider instance, will skip this snapshot");
+            return;
+        }
+
+        credentialsProviders.get(0).saveSnapshot();
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(5);
+    }
+}
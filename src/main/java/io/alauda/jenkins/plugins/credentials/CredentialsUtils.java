@@ -11,7 +11,11 @@ public final class CredentialsUtils {
     private CredentialsUtils() {}
 
     public static StringCredentials convertToStringCredentials(V1ObjectMeta meta, String token) {
+        return convertToStringCredentials(meta, Secret.fromString(token));
+    }
+
+    public static StringCredentials convertToStringCredentials(V1ObjectMeta meta, Secret token) {
         return new StringCredentialsImpl(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(meta),
-                SecretUtils.getCredentialDescription(meta), Secret.fromString(token));
+                SecretUtils.getCredentialDescription(meta), token);
     }
 }
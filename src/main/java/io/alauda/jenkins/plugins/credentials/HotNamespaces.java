@@ -0,0 +1,53 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import jenkins.util.SystemProperties;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Namespaces whose credentials are likely to be used soon: the global namespaces, and the namespaces that lookups
+ * have visited recently. Secrets in them are reconciled before other secrets.
+ */
+public final class HotNamespaces {
+
+    private static final Duration WINDOW = Duration.ofMinutes(
+            SystemProperties.getLong(HotNamespaces.class.getName() + ".windowMinutes", 10L));
+    private static final int MAX_SIZE = SystemProperties.getInteger(HotNamespaces.class.getName() + ".maxSize", 1024);
+
+    // Time of the last lookup keyed by namespace
+    private final Map<String, Long> lastLookups = new ConcurrentHashMap<>();
+
+    /**
+     * Record the namespaces visited by a lookup.
+     */
+    public void recordLookup(Collection<String> namespaces) {
+        long now = System.nanoTime();
+        if (lastLookups.size() + namespaces.size() > MAX_SIZE) {
+            evict(now);
+        }
+        for (String namespace : namespaces) {
+            if (lastLookups.size() >= MAX_SIZE && !lastLookups.containsKey(namespace)) {
+                return;
+            }
+            lastLookups.put(namespace, now);
+        }
+    }
+
+    /**
+     * @return true if the namespace is a global namespace or was visited by a lookup within the window.
+     */
+    public boolean isHot(String namespace) {
+        if (KubernetesCredentialsProviderConfiguration.get().getCompiled().getGlobalNamespaces().contains(namespace)) {
+            return true;
+        }
+        Long lastLookup = lastLookups.get(namespace);
+        return lastLookup != null && System.nanoTime() - lastLookup < WINDOW.toNanos();
+    }
+
+    private void evict(long now) {
+        lastLookups.values().removeIf(lastLookup -> now - lastLookup >= WINDOW.toNanos());
+    }
+}
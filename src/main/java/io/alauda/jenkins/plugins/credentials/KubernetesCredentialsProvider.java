@@ -3,7 +3,6 @@ package io.alauda.jenkins.plugins.credentials;
 import com.cloudbees.plugins.credentials.Credentials;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsStore;
-import com.cloudbees.plugins.credentials.common.IdCredentials;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.model.ItemGroup;
@@ -12,119 +11,181 @@ import hudson.security.ACL;
 import io.alauda.jenkins.devops.support.KubernetesCluster;
 import io.alauda.jenkins.devops.support.KubernetesClusterConfiguration;
 import io.alauda.jenkins.devops.support.KubernetesClusterConfigurationListener;
+import io.alauda.jenkins.plugins.credentials.controller.PriorityWorkQueue;
+import io.alauda.jenkins.plugins.credentials.controller.ScalingController;
+import io.alauda.jenkins.plugins.credentials.controller.TrackingWorkQueue;
+import io.alauda.jenkins.plugins.credentials.convertor.ConversionPipeline;
 import io.alauda.jenkins.plugins.credentials.convertor.CredentialsConversionException;
-import io.alauda.jenkins.plugins.credentials.convertor.SecretToCredentialConverter;
+import io.alauda.jenkins.plugins.credentials.index.CredentialsIndex;
+import io.alauda.jenkins.plugins.credentials.index.CredentialsSnapshot;
+import io.alauda.jenkins.plugins.credentials.index.ResultCache;
 import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
-import io.alauda.jenkins.plugins.credentials.metadata.MetadataProvider;
-import io.alauda.jenkins.plugins.credentials.rule.KubernetesSecretRule;
+import io.alauda.jenkins.plugins.credentials.metadata.ResourceVersionProvider;
 import io.alauda.jenkins.plugins.credentials.scope.JenkinsRootScope;
 import io.alauda.jenkins.plugins.credentials.scope.KubernetesSecretScope;
+import io.alauda.jenkins.plugins.credentials.watch.SecretResolver;
+import io.alauda.jenkins.plugins.credentials.watch.SecretPayloadCache;
+import io.alauda.jenkins.plugins.credentials.watch.SecretSelector;
+import io.alauda.jenkins.plugins.credentials.watch.SecretSummary;
+import io.alauda.jenkins.plugins.credentials.watch.SecretWatchManager;
 import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.Configuration;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
-import io.kubernetes.client.extended.controller.Controller;
-import io.kubernetes.client.extended.controller.ControllerManager;
+import io.kubernetes.client.extended.controller.ControllerWatch;
 import io.kubernetes.client.extended.controller.builder.ControllerBuilder;
-import io.kubernetes.client.extended.controller.builder.ControllerManagerBuilder;
 import io.kubernetes.client.extended.controller.reconciler.Reconciler;
 import io.kubernetes.client.extended.controller.reconciler.Request;
 import io.kubernetes.client.extended.controller.reconciler.Result;
-import io.kubernetes.client.informer.SharedIndexInformer;
-import io.kubernetes.client.informer.SharedInformerFactory;
-import io.kubernetes.client.informer.cache.Lister;
+import io.kubernetes.client.extended.workqueue.WorkQueue;
+import io.kubernetes.client.openapi.models.V1Namespace;
 import io.kubernetes.client.openapi.models.V1ObjectMeta;
 import io.kubernetes.client.openapi.models.V1Secret;
-import io.kubernetes.client.openapi.models.V1SecretList;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import org.acegisecurity.Authentication;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
-import java.time.LocalDateTime;
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Extension
-public class KubernetesCredentialsProvider extends CredentialsProvider implements KubernetesClusterConfigurationListener {
+public class KubernetesCredentialsProvider extends CredentialsProvider implements KubernetesClusterConfigurationListener,
+        CompiledConfigurationListener {
 
     private static final Logger logger = LoggerFactory.getLogger(KubernetesCredentialsProvider.class);
     private static final String CONTROLLER_NAME = "SecretController";
+    private static final int RESULT_CACHE_SIZE = SystemProperties.getInteger(KubernetesCredentialsProvider.class.getName() + ".resultCacheSize", 1024);
+    private static final boolean PERSIST_SNAPSHOT = SystemProperties.getBoolean(KubernetesCredentialsProvider.class.getName() + ".persistSnapshot", true);
+    private static final String SNAPSHOT_FILE_NAME = KubernetesCredentialsProvider.class.getName() + ".snapshot";
+    private static final long PAYLOAD_CACHE_BYTES = SystemProperties.getLong(KubernetesCredentialsProvider.class.getName() + ".payloadCacheBytes", 64L * 1024 * 1024);
+    // Events of a secret within the window are coalesced, so the secret is reconciled once with its latest state
+    private static final Duration DEBOUNCE_WINDOW = Duration.ofMillis(SystemProperties.getLong(KubernetesCredentialsProvider.class.getName() + ".debounceMillis", 200L));
+    // A secret that keeps changing is still reconciled once the max wait has passed since its first pending event
+    private static final Duration DEBOUNCE_MAX_WAIT = Duration.ofMillis(SystemProperties.getLong(KubernetesCredentialsProvider.class.getName() + ".debounceMaxWaitMillis", 2000L));
+    private static final int PUBLISH_BATCH_SIZE = SystemProperties.getInteger(KubernetesCredentialsProvider.class.getName() + ".publishBatchSize", 256);
+    // Deletes go first so removed credentials don't linger, then secrets in hot namespaces, then the rest
+    private static final int PRIORITY_DELETE = 0;
+    private static final int PRIORITY_HOT = 1;
+    private static final int PRIORITY_NORMAL = 2;
+    // How long a swap waits for the reconciles of the replaced generation to finish
+    private static final Duration STOP_TIMEOUT = Duration.ofMillis(SystemProperties.getLong(KubernetesCredentialsProvider.class.getName() + ".stopTimeoutMillis", 30000L));
+    private static final Duration READINESS_TIMEOUT = Duration.ofMillis(SystemProperties.getLong(KubernetesCredentialsProvider.class.getName() + ".readinessTimeoutMillis", 10000L));
 
-    // Maps of credentials keyed by credentials ID
-    private ConcurrentHashMap<String, CredentialsWithMetadata> credentials = new ConcurrentHashMap<>();
-    private ControllerManager controllerManager;
-    private ExecutorService controllerManagerThread;
+    // Publishes immutable snapshots of credentials keyed by credentials ID, and indexed by namespace and type
+    private final CredentialsIndex credentials = new CredentialsIndex();
+    // Lookup results keyed by type, ItemGroup and the generation of credentials
+    private final ResultCache resultCache = new ResultCache(RESULT_CACHE_SIZE);
+    private volatile SecretWatchManager watchManager;
+    // Identifies the configuration of the watches, a persisted snapshot only can be restored with the same one
+    private volatile String snapshotFingerprint;
+    // Identifies the cluster, read when the cluster is configured so the lifecycle lock is never held during the call
+    private volatile String clusterIdentity;
+    // Generation of the credentials and fingerprint of the last saved snapshot, unchanged credentials are not saved again
+    private volatile long savedGeneration = -1;
+    private volatile String savedFingerprint;
+    // IDs of credentials restored from the snapshot, until the API server has confirmed which of their secrets exist
+    private volatile Set<String> restoredIds;
+    // Resolves the data of secrets, informers only cache their metadata or summaries
+    private volatile SecretResolver secretResolver;
+    // The generation that serves lookups, and the generation that is syncing to replace it
+    private volatile Generation generation;
+    private volatile Generation staging;
+    // What the hot credentials are being converted after: the start, a relist or a swap of the informers
+    private volatile String hotReadinessCause = "start";
+    private final Object lifecycleLock = new Object();
 
-    private LocalDateTime lastEventComingTime;
+    private final AtomicLong skippedReconciles = new AtomicLong();
+    // Opened once all informers have synced since the provider was (re)started
+    private final ReadinessBarrier readiness = new ReadinessBarrier();
+    // Namespaces whose secrets are reconciled before others
+    private final HotNamespaces hotNamespaces = new HotNamespaces();
 
     @Override
     public void onConfigChange(KubernetesCluster cluster, ApiClient client) {
-        shutDown(null);
-
-        SharedInformerFactory factory = new SharedInformerFactory();
-        ControllerManagerBuilder managerBuilder = ControllerBuilder
-                .controllerManagerBuilder(factory);
-
-        String labelSelector = KubernetesCredentialsProviderConfiguration.get().getLabelSelector();
-
-        CoreV1Api coreV1Api = new CoreV1Api();
-
-        SharedIndexInformer<V1Secret> secretInformer = factory.sharedIndexInformerFor(
-                callGeneratorParams -> coreV1Api.listSecretForAllNamespacesCall(
-                        null,
-                        null,
-                        null,
-                        labelSelector,
-                        null,
-                        null,
-                        callGeneratorParams.resourceVersion,
-                        null,
-                        callGeneratorParams.timeoutSeconds,
-                        callGeneratorParams.watch,
-                        null), V1Secret.class, V1SecretList.class);
-
-
-        Controller controller = ControllerBuilder.defaultBuilder(factory).watch(
-                (workQueue) ->
-                        ControllerBuilder.controllerWatchBuilder(V1Secret.class, workQueue)
-                                .withWorkQueueKeyFunc(secret ->
-                                        new Request(secret.getMetadata().getNamespace(), secret.getMetadata().getName()))
-                                .withOnAddFilter(secret -> {
-                                    logger.debug("[{}] receives event: Add; Secret '{}/{}'",
-                                            CONTROLLER_NAME,
-                                            secret.getMetadata().getNamespace(), secret.getMetadata().getName());
-                                    return true;
-                                })
-                                .withOnUpdateFilter((oldSecret, newSecret) -> {
-                                    String namespace = oldSecret.getMetadata().getNamespace();
-                                    String name = oldSecret.getMetadata().getName();
-
-                                    logger.debug("[{}] receives event: Update; Secret '{}/{}'",
-                                            CONTROLLER_NAME,
-                                            namespace, name);
-
-                                    lastEventComingTime = LocalDateTime.now();
-
-                                    return true;
-                                })
-                                .withOnDeleteFilter((secret, aBoolean) -> {
-                                    logger.debug("[{}] receives event: Delete; Secret '{}/{}'",
-                                            CONTROLLER_NAME,
-                                            secret.getMetadata().getNamespace(), secret.getMetadata().getName());
-                                    return true;
-                                }).build())
-                .withReconciler(new SecretReconciler(new Lister<>(secretInformer.getIndexer())))
-                .withName(CONTROLLER_NAME)
-                .withWorkerCount(4)
-                .build();
-
-        controllerManager = managerBuilder.addController(controller).build();
-
-        controllerManagerThread = Executors.newSingleThreadExecutor();
-        controllerManagerThread.submit(() -> controllerManager.run());
+        clusterIdentity = identifyCluster(new CoreV1Api(client));
+        start(KubernetesCredentialsProviderConfiguration.get().getCompiled());
+    }
+
+    /**
+     * Only the work affected by the change is done: the global partition is rebuilt if the global namespaces
+     * changed, informers are started or stopped if the watched namespaces changed, and new informers are
+     * swapped in only if they would watch different secrets.
+     */
+    @Override
+    public void onChanged(CompiledConfiguration previous, CompiledConfiguration current) {
+        credentials.setGlobalNamespaces(current.getGlobalNamespaces());
+
+        synchronized (lifecycleLock) {
+            Generation latest = staging != null ? staging : generation;
+            // not started yet, the configuration will be used once the cluster is configured
+            if (latest == null) {
+                return;
+            }
+            if (latest.config.requiresNewWatches(current)) {
+                logger.info("[{}] Configuration of watches changed, will swap in new informers", CONTROLLER_NAME);
+                start(current);
+                return;
+            }
+            if (previous.affectsWorkers(current)) {
+                for (Generation running : Arrays.asList(generation, staging)) {
+                    if (running != null) {
+                        running.controller.setWorkers(current.getWorkerCount(), current.isAdaptiveWorkers());
+                    }
+                }
+            }
+        }
+
+        if (previous.affectsWatchedNamespaces(current)) {
+            syncWatchedNamespaces();
+        }
+    }
+
+    private void start(CompiledConfiguration config) {
+        synchronized (lifecycleLock) {
+            if (staging != null) {
+                staging.stop();
+                staging = null;
+            }
+
+            Generation next = new Generation(config, clusterIdentity);
+            if (generation == null) {
+                // nothing is served yet, start serving right away
+                readiness.reset();
+                hotReadinessCause = "start";
+                restoredIds = null;
+                credentials.setGlobalNamespaces(config.getGlobalNamespaces());
+                // only restore when nothing is converted yet, e.g. after Jenkins restarts
+                if (next.fingerprint != null && credentials.getSnapshot().size() == 0) {
+                    restoreSnapshot(next.fingerprint, next.manager, next.resolver);
+                }
+                publish(next);
+                syncWatchedNamespaces(next.manager);
+                next.controllerThread.submit(() -> next.controller.run());
+                return;
+            }
+
+            // keep serving and reconciling with the current informers until the new ones have synced
+            next.staged = new ConcurrentHashMap<>();
+            staging = next;
+            resetHotReadiness(System.nanoTime(), "swap of the informers");
+            syncWatchedNamespaces(next.manager);
+            next.controllerThread.submit(() -> awaitAndSwap(next));
+            logger.info("[{}] Syncing new informers in background, current credentials are served until they are synced", CONTROLLER_NAME);
+        }
     }
 
     @Override
@@ -133,13 +194,18 @@ public class KubernetesCredentialsProvider extends CredentialsProvider implement
     }
 
     private void shutDown(Throwable reason) {
-        if (controllerManager != null) {
-            controllerManager.shutdown();
-            controllerManager = null;
-        }
-
-        if (controllerManagerThread != null && !controllerManagerThread.isShutdown()) {
-            controllerManagerThread.shutdown();
+        synchronized (lifecycleLock) {
+            if (staging != null) {
+                staging.stop();
+                staging = null;
+            }
+            if (generation != null) {
+                generation.stop();
+                generation = null;
+            }
+            watchManager = null;
+            secretResolver = null;
+            restoredIds = null;
         }
 
         if (reason != null) {
@@ -149,44 +215,415 @@ public class KubernetesCredentialsProvider extends CredentialsProvider implement
         }
     }
 
-    public LocalDateTime getLastEventComingTime() {
-        return lastEventComingTime;
+    /**
+     * Serve lookups and persist snapshots with the generation.
+     */
+    private void publish(Generation next) {
+        generation = next;
+        watchManager = next.manager;
+        secretResolver = next.resolver;
+        snapshotFingerprint = next.fingerprint;
+    }
+
+    /**
+     * Wait for the informers of the staged generation to sync, then swap it in: the credentials it has converted
+     * and the removal of credentials whose secrets are gone are published in one snapshot, the current generation
+     * is stopped, and the controller of the new generation starts with the events queued since its informers
+     * started. Runs on the controller thread of the staged generation.
+     */
+    private void awaitAndSwap(Generation next) {
+        long start = System.nanoTime();
+        try {
+            while (!next.manager.hasSynced()) {
+                if (next.stopped) {
+                    return;
+                }
+                Thread.sleep(100);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Generation replaced;
+        synchronized (lifecycleLock) {
+            if (next.stopped || staging != next) {
+                return;
+            }
+            replaced = generation;
+        }
+
+        // reconciles in flight would publish credentials of the replaced informers after the swap, wait for them
+        // without the lock so configuration changes and shutdown are not blocked meanwhile
+        replaced.stop();
+        try {
+            if (!replaced.awaitTermination(STOP_TIMEOUT)) {
+                logger.warn("[{}] Reconciles of the replaced informers are still running after {} ms, will swap anyway",
+                        CONTROLLER_NAME, STOP_TIMEOUT.toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int staged;
+        synchronized (lifecycleLock) {
+            // replaced by a newer configuration or shut down while waiting
+            if (next.stopped || staging != next || generation != replaced) {
+                return;
+            }
+            Map<String, CredentialsWithMetadata> stagedCredentials = next.staged;
+            next.staged = null;
+            staged = stagedCredentials.size();
+            retainLive(next.manager, stagedCredentials);
+            staging = null;
+            publish(next);
+        }
+        logger.info("[{}] Swapped in new informers in {} ms, {} credentials were converted or kept from the initial lists",
+                CONTROLLER_NAME, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), staged);
+
+        // the hot secrets might all have been converted while syncing
+        updateHotReadiness();
+        next.controller.run();
+    }
+
+    /**
+     * A snapshot is only restored into the same cluster, the API server URL might be the same for different
+     * clusters, e.g. behind a proxy, so the UID of the kube-system namespace identifies the cluster too.
+     * Reading it needs the permission to get namespaces, without it snapshots are not persisted.
+     * @return the identity of the cluster, or null if snapshots are disabled or the cluster can't be identified.
+     */
+    private static String identifyCluster(CoreV1Api coreV1Api) {
+        if (!PERSIST_SNAPSHOT) {
+            return null;
+        }
+        try {
+            V1Namespace kubeSystem = coreV1Api.readNamespace("kube-system", null, null, null);
+            return coreV1Api.getApiClient().getBasePath() + ";" + kubeSystem.getMetadata().getUid();
+        } catch (ApiException e) {
+            logger.warn("[{}] Unable to read the kube-system namespace to identify the cluster, credentials won't be "
+                    + "persisted, the service account needs the permission to get namespaces, reason: {}",
+                    CONTROLLER_NAME, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Publish the credentials, and remove the credentials of secrets the informers don't have in one snapshot.
+     * The informers have no delete events for secrets deleted while nothing was watching them.
+     */
+    private void retainLive(SecretWatchManager manager, Map<String, CredentialsWithMetadata> credentialsById) {
+        Set<String> live = new HashSet<>();
+        manager.list().forEach(secret -> live.add(SecretUtils.getCredentialId(secret)));
+        int removed = credentials.replace(credentialsById, live::contains);
+        if (removed > 0) {
+            logger.info("[{}] Removed {} credentials whose Secrets no longer exist", CONTROLLER_NAME, removed);
+        }
+    }
+
+    /**
+     * Informers, resolver and controller built from one configuration.
+     */
+    private class Generation {
+        private final SecretWatchManager manager;
+        private final SecretResolver resolver;
+        private final ScalingController controller;
+        private final PriorityWorkQueue<Request> priorityQueue;
+        private final TrackingWorkQueue<Request> workQueue;
+        private final ExecutorService controllerThread = Executors.newSingleThreadExecutor();
+        // Converts the pages of the initial lists in parallel, shared by all pages of the generation
+        private final ForkJoinPool bulkLoadPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        private final CompiledConfiguration config;
+        // Identifies the cluster and the configuration of the watches, null when only metadata is watched or the
+        // cluster can't be identified
+        private final String fingerprint;
+        // Credentials converted from the initial lists until the generation is swapped in, null when they are published right away
+        private volatile Map<String, CredentialsWithMetadata> staged;
+        private volatile boolean stopped;
+        // When the informers were first seen synced, the readiness waits for the events queued until then
+        private volatile long syncedAt;
+
+        Generation(CompiledConfiguration config, String clusterIdentity) {
+            this.config = config;
+            boolean metadataOnly = config.isMetadataOnlyWatch();
+
+            CoreV1Api coreV1Api = new CoreV1Api();
+            List<SecretSelector> selectors = SecretSelector.compile(config.getLabelSelector(), config.isCredentialsTypeLabelRequired());
+            SecretSelector namespacedSelector = SecretSelector.compileSingle(config.getLabelSelector(), config.isCredentialsTypeLabelRequired());
+            // fetched secrets only need to be cached when they might be fetched again by lookups
+            resolver = new SecretResolver(coreV1Api, namespacedSelector,
+                    new SecretPayloadCache(metadataOnly ? PAYLOAD_CACHE_BYTES : 0), KubernetesCredentialsProvider.this::putCredentials);
+
+            priorityQueue = new PriorityWorkQueue<>(this::priority, PRIORITY_NORMAL, KubernetesCredentialsProvider.this::updateHotReadiness);
+            workQueue = new TrackingWorkQueue<>(priorityQueue);
+            WorkQueue<Request> events = workQueue.debounced(DEBOUNCE_WINDOW, DEBOUNCE_MAX_WAIT);
+            ControllerWatch<V1Secret> secretWatch = ControllerBuilder.controllerWatchBuilder(V1Secret.class, events)
+                    .withWorkQueueKeyFunc(secret ->
+                            new Request(secret.getMetadata().getNamespace(), secret.getMetadata().getName()))
+                    .withOnAddFilter(secret -> {
+                        logger.debug("[{}] receives event: Add; Secret '{}/{}'",
+                                CONTROLLER_NAME,
+                                secret.getMetadata().getNamespace(), secret.getMetadata().getName());
+                        return true;
+                    })
+                    .withOnUpdateFilter((oldSecret, newSecret) -> {
+                        String namespace = oldSecret.getMetadata().getNamespace();
+                        String name = oldSecret.getMetadata().getName();
+
+                        logger.debug("[{}] receives event: Update; Secret '{}/{}'",
+                                CONTROLLER_NAME,
+                                namespace, name);
+
+                        // the API server resends secrets that haven't changed, e.g. when the watch is re-established
+                        if (!hasChanged(oldSecret, newSecret)) {
+                            skippedReconciles.incrementAndGet();
+                            resolver.release(namespace, name, newSecret.getMetadata().getResourceVersion());
+                            // a relist has bulk loaded it, the reconciler won't take it
+                            resolver.takeLoaded(namespace, name, newSecret.getMetadata().getResourceVersion());
+                            refreshResourceVersion(newSecret.getMetadata(), this);
+                            return false;
+                        }
+
+                        return true;
+                    })
+                    .withOnDeleteFilter((secret, aBoolean) -> {
+                        logger.debug("[{}] receives event: Delete; Secret '{}/{}'",
+                                CONTROLLER_NAME,
+                                secret.getMetadata().getNamespace(), secret.getMetadata().getName());
+                        return true;
+                    }).build();
+
+            // informers are managed by the watch manager, all of them send events to the work queue of the controller
+            manager = new SecretWatchManager(coreV1Api, selectors, namespacedSelector, metadataOnly, resolver::offer,
+                    secrets -> bulkLoad(secrets, this), secretWatch.getResourceEventHandler(), events,
+                    since -> relisted(since, this));
+
+            controller = new ScalingController(CONTROLLER_NAME, new SecretReconciler(manager, resolver, metadataOnly),
+                    workQueue, config.getWorkerCount(), config.isAdaptiveWorkers(), credentials::flush, PUBLISH_BATCH_SIZE);
+
+            fingerprint = metadataOnly || clusterIdentity == null ? null
+                    : clusterIdentity + ";" + selectors + ";" + namespacedSelector;
+        }
+
+        /**
+         * Secrets that are gone from the informers are deletes, the credentials of secrets in hot namespaces are
+         * likely to be looked up soon.
+         */
+        private int priority(Request request) {
+            if (manager != null && manager.get(request.getNamespace(), request.getName()) == null) {
+                return PRIORITY_DELETE;
+            }
+            return hotNamespaces.isHot(request.getNamespace()) ? PRIORITY_HOT : PRIORITY_NORMAL;
+        }
+
+        void stop() {
+            stopped = true;
+            controller.shutdown();
+            manager.shutDown();
+            resolver.shutDown();
+            bulkLoadPool.shutdown();
+            controllerThread.shutdown();
+        }
+
+        /**
+         * Wait for the reconciles, resolutions and bulk loads in flight after {@link #stop()}, so they don't
+         * publish credentials once the generation is replaced.
+         * @return true if all of them finished within the timeout.
+         */
+        boolean awaitTermination(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            return controller.awaitTermination(Duration.ofNanos(deadline - System.nanoTime()))
+                    && resolver.awaitTermination(Duration.ofNanos(deadline - System.nanoTime()))
+                    && bulkLoadPool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Start or stop informers to match the namespaces the scopes need. When namespaced watch is disabled,
+     * or any scope cannot tell the namespaces it needs, secrets in all namespaces will be watched.
+     */
+    public void syncWatchedNamespaces() {
+        synchronized (lifecycleLock) {
+            if (generation != null) {
+                syncWatchedNamespaces(generation.manager);
+            }
+            if (staging != null) {
+                syncWatchedNamespaces(staging.manager);
+            }
+        }
+    }
+
+    private void syncWatchedNamespaces(SecretWatchManager manager) {
+        Set<String> namespaces = null;
+        if (KubernetesCredentialsProviderConfiguration.get().getCompiled().isNamespacedWatch()) {
+            namespaces = getRequiredNamespaces();
+        }
+
+        if (namespaces == null) {
+            manager.watchAllNamespaces();
+        } else {
+            manager.watchNamespaces(namespaces);
+        }
+    }
+
+    /**
+     * @return namespaces that are needed by all scopes, or null if any scope needs secrets in all namespaces.
+     */
+    private Set<String> getRequiredNamespaces() {
+        Set<String> namespaces = new HashSet<>();
+        for (KubernetesSecretScope scope : KubernetesSecretScope.all()) {
+            Collection<String> required = scope.getRequiredNamespaces();
+            if (required == null) {
+                logger.debug("Scope {} needs Secrets in all namespaces", scope.getClass().getName());
+                return null;
+            }
+            namespaces.addAll(required);
+        }
+        return namespaces;
+    }
+
+    /**
+     * @return the manager of the informers, or null if the provider is not started.
+     */
+    public SecretWatchManager getWatchManager() {
+        return watchManager;
+    }
+
+    /**
+     * @return number of updates that were not reconciled as the secrets didn't change.
+     */
+    public long getSkippedReconciles() {
+        return skippedReconciles.get();
+    }
+
+    /**
+     * The secret got a new resourceVersion without changing its content, record the new resourceVersion in its
+     * credentials, so comparisons of resourceVersions don't convert or fetch the secret again.
+     */
+    private void refreshResourceVersion(V1ObjectMeta metadata, Generation owner) {
+        String id = SecretUtils.getCredentialId(metadata);
+        String resourceVersion = metadata.getResourceVersion();
+
+        Map<String, CredentialsWithMetadata> staged = owner.staged;
+        if (staged != null) {
+            staged.computeIfPresent(id, (key, existing) -> existing.withMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA, resourceVersion));
+        }
+
+        CredentialsWithMetadata existing = credentials.getSnapshot().get(id);
+        if (existing != null && !Objects.equals(resourceVersion, existing.getMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA))) {
+            credentials.put(id, existing.withMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA, resourceVersion));
+        }
+    }
+
+    /**
+     * A secret is unchanged if its resourceVersion is the same, or the digest of its data, labels and annotations
+     * is the same. The digest is only known when the informers keep {@link SecretSummary}s.
+     */
+    private static boolean hasChanged(V1Secret oldSecret, V1Secret newSecret) {
+        if (Objects.equals(oldSecret.getMetadata().getResourceVersion(), newSecret.getMetadata().getResourceVersion())) {
+            return false;
+        }
+        return !SecretSummary.sameContent(oldSecret, newSecret);
     }
 
 
     class SecretReconciler implements Reconciler {
 
-        private Lister<V1Secret> secretLister;
+        private SecretWatchManager secrets;
+        private SecretResolver resolver;
+        private boolean metadataOnly;
 
-        public SecretReconciler(Lister<V1Secret> secretLister) {
-            this.secretLister = secretLister;
+        public SecretReconciler(SecretWatchManager secrets, SecretResolver resolver, boolean metadataOnly) {
+            this.secrets = secrets;
+            this.resolver = resolver;
+            this.metadataOnly = metadataOnly;
         }
 
         @Override
         public Result reconcile(Request request) {
             String namespace = request.getNamespace();
             String name = request.getName();
+            // the generation has been replaced, its informers are stopped
+            if (secrets != watchManager) {
+                return new Result(false);
+            }
+            updateReadiness();
 
-            V1Secret secret = secretLister.namespace(namespace).get(name);
+            V1Secret secret = secrets.get(namespace, name);
             if (secret == null) {
                 logger.debug("[{}] Unable to get Secret '{}/{}' from local list, will remove it", getControllerName(), namespace, name);
+                resolver.forget(namespace, name);
                 String credId = SecretUtils.getCredentialId(new V1ObjectMeta().namespace(namespace).name(name));
-                if (credentials.containsKey(credId)) {
+                if (credentials.stageRemoval(credId)) {
                     logger.debug("Secret Deleted - {}", credId);
-                    credentials.remove(credId);
                 }
                 return new Result(false);
             }
 
-            IdCredentials cred = convertSecret(secret);
-            if (cred != null) {
-                logger.debug("Secret Added - {}", cred.getId());
-                CredentialsWithMetadata credWithMetadata = addMetadataToCredentials(secret, cred);
-                credentials.put(cred.getId(), credWithMetadata);
+            if (metadataOnly) {
+                return reconcileMetadata(secret);
+            }
+
+            return reconcileSummary(secret);
+        }
+
+        /**
+         * The informers only keep the summary of the secret, its data is taken from the resolver and released
+         * after conversion, so only the converted credentials hold the data.
+         */
+        private Result reconcileSummary(V1Secret summary) {
+            String namespace = summary.getMetadata().getNamespace();
+            String name = summary.getMetadata().getName();
+
+            // the bulk load has converted it
+            if (resolver.takeLoaded(namespace, name, summary.getMetadata().getResourceVersion())) {
+                return new Result(false);
+            }
+
+            try {
+                V1Secret secret = resolver.fetch(namespace, name, summary.getMetadata().getResourceVersion());
+                if (secret != null) {
+                    stageCredentials(secret);
+                    // nothing references the full secret anymore, don't leave its plaintext on the heap
+                    SecretData.wipe(secret);
+                }
+                return new Result(false);
+            } catch (ApiException e) {
+                logger.warn("[{}] Unable to fetch Secret '{}/{}', will retry, reason: {}", getControllerName(), namespace, name, e.getMessage());
+                return new Result(true);
+            }
+        }
+
+        /**
+         * Only the metadata of the secret is watched. Credentials that are not used yet will be fetched by
+         * the first lookup, credentials already in use will be fetched again once their resourceVersion changes.
+         */
+        private Result reconcileMetadata(V1Secret metadata) {
+            String namespace = metadata.getMetadata().getNamespace();
+            String name = metadata.getMetadata().getName();
+            String resourceVersion = metadata.getMetadata().getResourceVersion();
+
+            CredentialsWithMetadata existing = credentials.getSnapshot().get(SecretUtils.getCredentialId(metadata));
+            if (existing == null) {
+                logger.debug("[{}] Secret '{}/{}' will be fetched on demand", getControllerName(), namespace, name);
+                resolver.markPending(namespace, name, resourceVersion);
                 return new Result(false);
             }
 
-            return new Result(false);
+            if (Objects.equals(resourceVersion, existing.getMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA))) {
+                return new Result(false);
+            }
+
+            try {
+                V1Secret secret = resolver.fetch(namespace, name, resourceVersion);
+                if (secret != null) {
+                    stageCredentials(secret);
+                }
+                return new Result(false);
+            } catch (ApiException e) {
+                logger.warn("[{}] Unable to fetch Secret '{}/{}', will retry, reason: {}", getControllerName(), namespace, name, e.getMessage());
+                return new Result(true);
+            }
         }
 
         public String getControllerName() {
@@ -195,31 +632,340 @@ public class KubernetesCredentialsProvider extends CredentialsProvider implement
     }
 
 
-    @Nonnull
-    @Override
-    public <C extends Credentials> List<C> getCredentials(@Nonnull Class<C> type, final ItemGroup itemGroup, Authentication authentication) {
-        logger.debug("getCredentials called with type {} and authentication {}", type.getName(), authentication);
-        if (ACL.SYSTEM.equals(authentication)) {
-            List<C> credentialsWithinScopes = getCredentialsWithinScope(type, itemGroup, authentication);
+    /**
+     * Convert a page of listed secrets in parallel on the pool of the generation and publish them in
+     * one snapshot, the reconciler will skip them when the informer reports them. Credentials of secrets whose
+     * resourceVersion hasn't changed are kept instead of converted again. While the generation is staged, the
+     * credentials are kept until it is swapped in.
+     */
+    private void bulkLoad(List<V1Secret> secrets, Generation owner) {
+        SecretResolver resolver = owner.resolver;
+        CredentialsSnapshot current = credentials.getSnapshot();
+        AtomicLong kept = new AtomicLong();
+        long start = System.nanoTime();
+        try {
+            Map<String, CredentialsWithMetadata> converted = owner.bulkLoadPool.submit(() -> secrets.parallelStream()
+                    .map(secret -> {
+                        V1ObjectMeta metadata = secret.getMetadata();
+                        resolver.markLoaded(metadata.getNamespace(), metadata.getName(), metadata.getResourceVersion());
+                        CredentialsWithMetadata existing = current.get(SecretUtils.getCredentialId(metadata));
+                        if (existing != null && Objects.equals(metadata.getResourceVersion(),
+                                existing.getMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA))) {
+                            kept.incrementAndGet();
+                            return existing;
+                        }
+                        return convertSecret(secret);
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toMap(c -> c.getCredentials().getId(), c -> c, (a, b) -> b))).get();
+            Map<String, CredentialsWithMetadata> staged = owner.staged;
+            if (owner.stopped) {
+                // the generation is replaced, its credentials must not overwrite the ones of the new generation
+                logger.debug("[{}] Bulk load discarded, the generation is stopped", CONTROLLER_NAME);
+            } else {
+                if (staged != null) {
+                    staged.putAll(converted);
+                } else {
+                    credentials.putAll(converted);
+                }
+                logger.info("[{}] Loaded {} credentials from {} Secrets in {} ms, {} unchanged credentials were kept", CONTROLLER_NAME,
+                        converted.size(), secrets.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), kept.get());
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            logger.warn("[{}] Bulk load failed, Secrets will be converted by the controller, reason: {}", CONTROLLER_NAME, e.getMessage());
+            secrets.forEach(secret -> {
+                resolver.forget(secret.getMetadata().getNamespace(), secret.getMetadata().getName());
+                resolver.offer(secret);
+            });
+            return;
+        } catch (RejectedExecutionException e) {
+            // the generation is stopped, its credentials won't be used
+            logger.debug("[{}] Bulk load skipped, the generation is stopped", CONTROLLER_NAME);
+            return;
+        }
+
+        secrets.forEach(SecretData::wipe);
+        updateReadiness();
+    }
+
+    private CredentialsSnapshotFile getSnapshotFile() {
+        return new CredentialsSnapshotFile(new File(Jenkins.get().getRootDir(), SNAPSHOT_FILE_NAME),
+                Configuration.getDefaultApiClient().getJSON());
+    }
+
+    /**
+     * Persist the converted credentials and the states of the informers, so they can be restored after Jenkins
+     * restarts. Only happens when full secrets are watched, all informers are synced and the credentials have
+     * changed since the last snapshot.
+     */
+    public void saveSnapshot() {
+        SecretWatchManager manager = watchManager;
+        String fingerprint = snapshotFingerprint;
+        if (!PERSIST_SNAPSHOT || manager == null || fingerprint == null || !manager.hasSynced()) {
+            return;
+        }
 
-            List<KubernetesSecretScope> scopes = KubernetesSecretScope.matchedScopes(itemGroup);
-            if (scopes.stream().anyMatch(s -> s.getClass().equals(JenkinsRootScope.class))) {
-                return credentialsWithinScopes;
+        CredentialsSnapshot snapshot = credentials.getSnapshot();
+        if (snapshot.getGeneration() == savedGeneration && fingerprint.equals(savedFingerprint)) {
+            logger.debug("[{}] Credentials are not changed since the last snapshot, will skip this snapshot", CONTROLLER_NAME);
+            return;
+        }
+
+        Map<String, CredentialsWithMetadata> credentialsById = new HashMap<>();
+        for (CredentialsWithMetadata credentialsWithMetadata : snapshot.all()) {
+            credentialsById.put(credentialsWithMetadata.getCredentials().getId(), credentialsWithMetadata);
+        }
+
+        try {
+            getSnapshotFile().write(new CredentialsSnapshotFile.Content(fingerprint, manager.getWatchStates(), credentialsById));
+            savedGeneration = snapshot.getGeneration();
+            savedFingerprint = fingerprint;
+            logger.debug("[{}] Saved snapshot of {} credentials", CONTROLLER_NAME, credentialsById.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("[{}] Unable to save snapshot of credentials, reason: {}", CONTROLLER_NAME, e.getMessage());
+        }
+    }
+
+    /**
+     * Serve the credentials of the persisted snapshot right away, and let the informers resume watching from it.
+     * Secrets whose credentials are not in the snapshot with the same resourceVersion will be converted again,
+     * secrets will be listed again only if the API server doesn't have the resourceVersion anymore.
+     */
+    private void restoreSnapshot(String fingerprint, SecretWatchManager manager, SecretResolver resolver) {
+        if (!PERSIST_SNAPSHOT) {
+            return;
+        }
+
+        CredentialsSnapshotFile.Content content;
+        try {
+            content = getSnapshotFile().read();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("[{}] Unable to read snapshot of credentials, will list all Secrets, reason: {}", CONTROLLER_NAME, e.getMessage());
+            return;
+        }
+        if (content == null || !fingerprint.equals(content.getFingerprint())) {
+            return;
+        }
+
+        // only restore credentials of secrets the informers know, so they will be removed if the secrets are deleted
+        Map<String, CredentialsWithMetadata> restoredCredentials = new HashMap<>();
+        content.getWatchStates().values().forEach(state -> state.getSecrets().forEach(secret -> {
+            V1ObjectMeta metadata = secret.getMetadata();
+            String id = SecretUtils.getCredentialId(metadata);
+            CredentialsWithMetadata restored = content.getCredentials().get(id);
+            if (restored != null && Objects.equals(metadata.getResourceVersion(),
+                    restored.getMetadata(ResourceVersionProvider.RESOURCE_VERSION_METADATA))) {
+                restoredCredentials.put(id, restored);
+                resolver.markLoaded(metadata.getNamespace(), metadata.getName(), metadata.getResourceVersion());
             }
+        }));
+        credentials.putAll(restoredCredentials);
+        restoredIds = new HashSet<>(restoredCredentials.keySet());
+        manager.restore(content.getWatchStates());
+        readiness.markRestored();
+        logger.info("[{}] Restored {} credentials from snapshot", CONTROLLER_NAME, restoredCredentials.size());
+    }
 
+    /**
+     * Open the readiness barrier once all informers have synced. The initial lists are converted by the bulk
+     * loader before the informers report them synced. When only metadata is watched there is no bulk load, the
+     * barrier is opened once the controller has reconciled the events queued until the informers synced.
+     */
+    private void updateReadiness() {
+        Generation current = generation;
+        if (readiness.isReady() || current == null || !current.manager.hasSynced()) {
+            return;
+        }
+        SecretWatchManager manager = current.manager;
 
-            JenkinsRootScope rootScope = ExtensionList.lookup(JenkinsRootScope.class).get(0);
-            credentials.forEach((s, credentialsWithMetadata) -> {
-                if (rootScope.shouldShowInScope(Jenkins.getInstance(), credentialsWithMetadata)
-                        && type.isAssignableFrom(credentialsWithMetadata.getCredentials().getClass())) {
-                    C c = type.cast(credentialsWithMetadata.getCredentials());
-                    if (!credentialsWithinScopes.contains(c)) {
-                        credentialsWithinScopes.add(c);
-                    }
-                }
+        if (current.config.isMetadataOnlyWatch()) {
+            if (current.syncedAt == 0) {
+                current.syncedAt = System.nanoTime();
+            }
+            if (!current.workQueue.isDrainedUpTo(current.syncedAt)) {
+                return;
+            }
+            credentials.flush();
+        }
 
-            });
-            return credentialsWithinScopes;
+        if (readiness.markReady()) {
+            logger.info("[{}] Credentials are ready in {} ms", CONTROLLER_NAME, readiness.getTimeToReady().toMillis());
+            // credentials converted before the provider was stopped might belong to secrets deleted since then,
+            // restored informers only know the persisted secrets, their credentials are pruned once confirmed
+            if (restoredIds == null) {
+                retainLive(manager, Collections.emptyMap());
+            }
+        }
+        pruneRestored();
+        updateHotReadiness();
+    }
+
+    /**
+     * Remove the restored credentials whose secrets are gone, once the API server has confirmed the states of all
+     * restored informers. Until then the informers only know the persisted secrets, so they would keep every
+     * restored credentials.
+     */
+    public void pruneRestored() {
+        Set<String> restored = restoredIds;
+        SecretWatchManager manager = watchManager;
+        if (restored == null || manager == null || !manager.hasSynced() || !manager.hasConfirmedRestoredStates()) {
+            return;
+        }
+
+        restoredIds = null;
+        Set<String> live = new HashSet<>();
+        manager.list().forEach(secret -> live.add(SecretUtils.getCredentialId(secret)));
+        int removed = credentials.replace(Collections.emptyMap(), id -> !restored.contains(id) || live.contains(id));
+        if (removed > 0) {
+            logger.info("[{}] Removed {} restored credentials whose Secrets no longer exist", CONTROLLER_NAME, removed);
+        }
+    }
+
+    /**
+     * Publish the hot credentials once the informers have synced and no secret in hot namespaces is waiting to be
+     * reconciled, without waiting for the batch of the controller to fill up.
+     */
+    private void updateHotReadiness() {
+        Generation current = generation;
+        // credentials of staged informers are not served until they are swapped in
+        if (readiness.isHotReady() || current == null || staging != null || !current.manager.hasSynced()
+                || current.priorityQueue.getHotPending() > 0) {
+            return;
+        }
+
+        credentials.flush();
+        if (readiness.markHotReady()) {
+            logger.info("[{}] Hot credentials are available in {} ms after {}", CONTROLLER_NAME,
+                    readiness.getHotTimeToReady().toMillis(), hotReadinessCause);
+        }
+    }
+
+    /**
+     * An informer of the generation has listed secrets again, e.g. after the watched resourceVersion is gone, log
+     * how long the hot credentials take to be available again.
+     */
+    private void relisted(long since, Generation owner) {
+        // relists of staged informers are part of the swap
+        if (owner != generation) {
+            return;
+        }
+        resetHotReadiness(since, "relist");
+        updateHotReadiness();
+    }
+
+    private void resetHotReadiness(long since, String cause) {
+        hotReadinessCause = cause;
+        readiness.resetHot(since);
+    }
+
+    /**
+     * Wait for the informers to sync before serving a lookup, bounded by the readiness timeout. Lookups don't wait
+     * when the provider is stopped or credentials are restored from a snapshot.
+     */
+    private void awaitReadiness() {
+        if (watchManager == null) {
+            return;
+        }
+        if (!readiness.await(READINESS_TIMEOUT, this::updateReadiness)) {
+            logger.warn("[{}] Credentials are not ready after {} ms, lookups won't wait until they are ready and might miss credentials",
+                    CONTROLLER_NAME, READINESS_TIMEOUT.toMillis());
+        }
+    }
+
+    /**
+     * @return number of requests waiting in the work queue of the controller, 0 if the provider is not started.
+     */
+    public int getQueueDepth() {
+        Generation current = generation;
+        return current == null ? 0 : current.controller.getQueueDepth();
+    }
+
+    /**
+     * @return number of requests being reconciled, 0 if the provider is not started.
+     */
+    public int getInFlightReconciles() {
+        Generation current = generation;
+        return current == null ? 0 : current.controller.getInFlight();
+    }
+
+    /**
+     * @return how long the oldest request has been waiting in the work queue, zero if nothing is waiting.
+     */
+    public Duration getOldestQueuedAge() {
+        Generation current = generation;
+        return current == null ? Duration.ZERO : current.controller.getOldestItemAge();
+    }
+
+    /**
+     * @return number of events coalesced into requests that were already waiting, 0 if the provider is not started.
+     */
+    public long getCoalescedEvents() {
+        Generation current = generation;
+        return current == null ? 0 : current.controller.getCoalesced();
+    }
+
+    /**
+     * @return number of snapshots published by changes of credentials.
+     */
+    public long getPublishedBatches() {
+        return credentials.getPublishedBatches();
+    }
+
+    /**
+     * @return number of changes of credentials published.
+     */
+    public long getPublishedChanges() {
+        return credentials.getPublishedChanges();
+    }
+
+    /**
+     * @return time from start until all informers have synced, or null if not ready yet.
+     */
+    public Duration getTimeToReady() {
+        return readiness.getTimeToReady();
+    }
+
+    /**
+     * @return time from start until the credentials in hot namespaces are available, or null if not available yet.
+     */
+    public Duration getHotTimeToReady() {
+        return readiness.getHotTimeToReady();
+    }
+
+    public ReadinessBarrier getReadiness() {
+        return readiness;
+    }
+
+    private void putCredentials(V1Secret secret) {
+        stageCredentials(secret);
+        credentials.flush();
+    }
+
+    /**
+     * Convert the secret, its credentials are published with the next batch of the controller.
+     */
+    private void stageCredentials(V1Secret secret) {
+        CredentialsWithMetadata credWithMetadata = convertSecret(secret);
+        if (credWithMetadata != null) {
+            String id = credWithMetadata.getCredentials().getId();
+            logger.debug("Secret Added - {}", id);
+            credentials.stage(id, credWithMetadata);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <C extends Credentials> List<C> getCredentials(@Nonnull Class<C> type, final ItemGroup itemGroup, Authentication authentication) {
+        logger.debug("getCredentials called with type {} and authentication {}", type.getName(), authentication);
+        if (ACL.SYSTEM.equals(authentication)) {
+            awaitReadiness();
+            recordLookup(itemGroup);
+            resolvePendingSecrets(itemGroup, false);
+            CredentialsSnapshot snapshot = credentials.getSnapshot();
+            return resultCache.get(type, itemGroup, false, snapshot.getGeneration(), () -> findCredentials(snapshot, type, itemGroup));
         }
         return Collections.emptyList();
     }
@@ -227,50 +973,140 @@ public class KubernetesCredentialsProvider extends CredentialsProvider implement
     public <C extends Credentials> List<C> getCredentialsWithinScope(@Nonnull Class<C> type, final ItemGroup itemGroup, Authentication authentication) {
         logger.debug("getCredentials called with type {} and authentication {}", type.getName(), authentication);
         if (ACL.SYSTEM.equals(authentication)) {
-            List<C> list = new ArrayList<>();
-            Set<String> ids = new HashSet<>();
+            awaitReadiness();
+            recordLookup(itemGroup);
+            resolvePendingSecrets(itemGroup, true);
+            CredentialsSnapshot snapshot = credentials.getSnapshot();
+            return resultCache.get(type, itemGroup, true, snapshot.getGeneration(), () -> findCredentialsWithinScope(snapshot, type, itemGroup));
+        }
+        return Collections.emptyList();
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
 
-            List<KubernetesSecretScope> scopes = KubernetesSecretScope.matchedScopes(itemGroup);
+    /**
+     * @return the cache of fetched secrets, or null if the provider is not started.
+     */
+    public SecretPayloadCache getPayloadCache() {
+        SecretResolver resolver = secretResolver;
+        return resolver == null ? null : resolver.getPayloadCache();
+    }
 
-            credentials.forEach((id, credentialsWithMetadata) -> {
-                if (scopes.stream().anyMatch(scope -> scope.shouldShowInScope(itemGroup, credentialsWithMetadata))
-                        && type.isAssignableFrom(credentialsWithMetadata.getCredentials().getClass()) && ids.add(id)) {
-                    list.add(type.cast(credentialsWithMetadata.getCredentials()));
-                }
-            });
+    /**
+     * Record the namespaces the lookup visits as hot, before the result cache is consulted, so namespaces whose
+     * lookups are served from the cache stay hot too.
+     */
+    private void recordLookup(ItemGroup itemGroup) {
+        Set<String> namespaces = new HashSet<>();
+        for (KubernetesSecretScope scope : KubernetesSecretScope.matchedScopes(itemGroup)) {
+            Collection<String> namespacesInScope = scope.getNamespaces(itemGroup);
+            // the lookup visits all namespaces, none of them is hotter than the others
+            if (namespacesInScope == null) {
+                return;
+            }
+            namespaces.addAll(namespacesInScope);
+        }
+        hotNamespaces.recordLookup(namespaces);
+    }
 
-            return list;
+    /**
+     * Fetch the secrets that are not resolved yet in the namespaces the lookup might touch,
+     * only happens when watching metadata only.
+     */
+    private void resolvePendingSecrets(ItemGroup itemGroup, boolean withinScope) {
+        SecretResolver resolver = secretResolver;
+        if (resolver == null || !resolver.hasPending()) {
+            return;
         }
-        return Collections.emptyList();
+
+        Set<String> namespaces = new HashSet<>();
+        for (KubernetesSecretScope scope : KubernetesSecretScope.matchedScopes(itemGroup)) {
+            Collection<String> namespacesInScope = scope.getNamespaces(itemGroup);
+            if (namespacesInScope == null) {
+                resolver.resolve(null);
+                return;
+            }
+            namespaces.addAll(namespacesInScope);
+        }
+        if (!withinScope) {
+            JenkinsRootScope rootScope = ExtensionList.lookup(JenkinsRootScope.class).get(0);
+            namespaces.addAll(rootScope.getRequiredNamespaces());
+        }
+
+        resolver.resolve(namespaces);
     }
 
+    private <C extends Credentials> List<C> findCredentials(CredentialsSnapshot snapshot, Class<C> type, ItemGroup itemGroup) {
+        List<KubernetesSecretScope> scopes = KubernetesSecretScope.matchedScopes(itemGroup);
+        Map<String, CredentialsWithMetadata> credentialsWithinScopes = collectCredentialsWithinScope(snapshot, type, itemGroup, scopes);
 
-    private CredentialsWithMetadata addMetadataToCredentials(V1Secret s, IdCredentials cred) {
-        CredentialsWithMetadata credWithMetadata = new CredentialsWithMetadata<>(cred);
+        if (scopes.stream().anyMatch(s -> s.getClass().equals(JenkinsRootScope.class))) {
+            return toCredentialsList(type, credentialsWithinScopes.values());
+        }
 
-        MetadataProvider.all().forEach(metadataProvider -> metadataProvider.attach(s, credWithMetadata));
+        snapshot.mergeGlobal(type, credentialsWithinScopes);
+        return toCredentialsList(type, credentialsWithinScopes.values());
+    }
 
-        return credWithMetadata;
+    private <C extends Credentials> List<C> findCredentialsWithinScope(CredentialsSnapshot snapshot, Class<C> type, ItemGroup itemGroup) {
+        List<KubernetesSecretScope> scopes = KubernetesSecretScope.matchedScopes(itemGroup);
+        return toCredentialsList(type, collectCredentialsWithinScope(snapshot, type, itemGroup, scopes).values());
     }
 
+    /**
+     * Collect the credentials of the type that show in the matched scopes.
+     * @return credentials keyed by credentials ID, in the order they are found.
+     */
+    private Map<String, CredentialsWithMetadata> collectCredentialsWithinScope(CredentialsSnapshot snapshot, Class<?> type,
+                                                                                ItemGroup itemGroup, List<KubernetesSecretScope> scopes) {
+        Map<String, CredentialsWithMetadata> result = new LinkedHashMap<>();
 
-    private IdCredentials convertSecret(V1Secret s) {
-        if (KubernetesSecretRule.shouldExclude(s)) {
-            return null;
+        getCandidates(snapshot, type, scopes, itemGroup).forEach(credentialsWithMetadata -> {
+            if (scopes.stream().anyMatch(scope -> scope.shouldShowInScope(itemGroup, credentialsWithMetadata))) {
+                result.putIfAbsent(credentialsWithMetadata.getCredentials().getId(), credentialsWithMetadata);
+            }
+        });
+
+        return result;
+    }
+
+    private <C extends Credentials> List<C> toCredentialsList(Class<C> type, Collection<CredentialsWithMetadata> credentialsWithMetadata) {
+        List<C> list = new ArrayList<>(credentialsWithMetadata.size());
+        for (CredentialsWithMetadata c : credentialsWithMetadata) {
+            list.add(type.cast(c.getCredentials()));
         }
+        return list;
+    }
 
-        String type = getSecretType(s);
-        SecretToCredentialConverter lookup = SecretToCredentialConverter.lookup(type);
-        if (lookup != null) {
-            try {
-                return lookup.convert(s);
-            } catch (CredentialsConversionException ex) {
-                // do not spam the logs with the stacktrace...
-                logger.debug("Failed to convert Secret '" + SecretUtils.getCredentialId(s) + "' of type " + type, ex);
-                return null;
+    /**
+     * Get the credentials of the type that might show in the matched scopes, only the namespaces declared by the scopes
+     * will be visited unless one of the scopes cannot tell its namespaces.
+     */
+    private List<CredentialsWithMetadata> getCandidates(CredentialsSnapshot snapshot, Class<?> type,
+                                                        List<KubernetesSecretScope> scopes, ItemGroup itemGroup) {
+        Set<String> namespaces = new LinkedHashSet<>();
+        for (KubernetesSecretScope scope : scopes) {
+            Collection<String> namespacesInScope = scope.getNamespaces(itemGroup);
+            if (namespacesInScope == null) {
+                return snapshot.all(type);
             }
+            namespaces.addAll(namespacesInScope);
+        }
+
+        return snapshot.inNamespaces(namespaces, type);
+    }
+
+
+    private CredentialsWithMetadata convertSecret(V1Secret s) {
+        try {
+            return ConversionPipeline.get().convertWithMetadata(s);
+        } catch (CredentialsConversionException ex) {
+            // do not spam the logs with the stacktrace...
+            logger.debug("Failed to convert Secret '" + SecretUtils.getCredentialId(s) + "' of type " + getSecretType(s), ex);
+            return null;
         }
-        return null;
     }
 
     private String getSecretType(V1Secret s) {
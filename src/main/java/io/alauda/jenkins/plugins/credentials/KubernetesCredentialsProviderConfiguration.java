@@ -1,18 +1,28 @@
 package io.alauda.jenkins.plugins.credentials;
 
 import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.scope.KubernetesSecretScope;
 import jenkins.model.GlobalConfiguration;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 @Extension(ordinal = 202)
 public class KubernetesCredentialsProviderConfiguration extends GlobalConfiguration {
 
     private String globalNamespaces = "global-credentials";
     private String labelSelector;
+    private boolean namespacedWatch;
+    private boolean metadataOnlyWatch;
+    private boolean credentialsTypeLabelRequired;
+    private int workerCount = 4;
+    private boolean adaptiveWorkers;
+    private transient volatile CompiledConfiguration compiled;
 
     public static KubernetesCredentialsProviderConfiguration get() {
         return GlobalConfiguration.all().get(KubernetesCredentialsProviderConfiguration.class);
@@ -21,15 +31,32 @@ public class KubernetesCredentialsProviderConfiguration extends GlobalConfigurat
 
     public KubernetesCredentialsProviderConfiguration() {
         load();
+        compiled = CompiledConfiguration.compile(this);
     }
 
     @Override
     public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
         req.bindJSON(this, json);
         save();
+
+        CompiledConfiguration previous = getCompiled();
+        compiled = CompiledConfiguration.compile(this);
+        List<CompiledConfigurationListener> listeners = new ArrayList<>(CompiledConfigurationListener.all());
+        // scopes first, so the namespaces they require are up to date when the other listeners do their work
+        listeners.sort(Comparator.comparing(listener -> !(listener instanceof KubernetesSecretScope)));
+        for (CompiledConfigurationListener listener : listeners) {
+            listener.onChanged(previous, compiled);
+        }
         return true;
     }
 
+    /**
+     * @return the configuration compiled when it was last saved.
+     */
+    public CompiledConfiguration getCompiled() {
+        return compiled;
+    }
+
     public String getGlobalNamespaces() {
         return globalNamespaces;
     }
@@ -48,6 +75,51 @@ public class KubernetesCredentialsProviderConfiguration extends GlobalConfigurat
         this.labelSelector = labelSelector;
     }
 
+    public boolean isNamespacedWatch() {
+        return namespacedWatch;
+    }
+
+    @DataBoundSetter
+    public void setNamespacedWatch(boolean namespacedWatch) {
+        this.namespacedWatch = namespacedWatch;
+    }
+
+    public boolean isMetadataOnlyWatch() {
+        return metadataOnlyWatch;
+    }
+
+    @DataBoundSetter
+    public void setMetadataOnlyWatch(boolean metadataOnlyWatch) {
+        this.metadataOnlyWatch = metadataOnlyWatch;
+    }
+
+    public boolean isCredentialsTypeLabelRequired() {
+        return credentialsTypeLabelRequired;
+    }
+
+    @DataBoundSetter
+    public void setCredentialsTypeLabelRequired(boolean credentialsTypeLabelRequired) {
+        this.credentialsTypeLabelRequired = credentialsTypeLabelRequired;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @DataBoundSetter
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    public boolean isAdaptiveWorkers() {
+        return adaptiveWorkers;
+    }
+
+    @DataBoundSetter
+    public void setAdaptiveWorkers(boolean adaptiveWorkers) {
+        this.adaptiveWorkers = adaptiveWorkers;
+    }
+
     @Nonnull
     @Override
     public String getDisplayName() {
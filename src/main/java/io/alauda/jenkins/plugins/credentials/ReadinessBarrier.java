@@ -0,0 +1,189 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Readiness of the credentials since the provider was (re)started. Lookups wait on the barrier for a bounded time
+ * until the informers have synced, so builds started right after Jenkins starts or the cluster configuration
+ * changes don't fail on credentials that are not converted yet.
+ * <p>
+ * The barrier is one-shot: once a lookup has timed out, it is degraded and later lookups are served right away
+ * instead of each waiting for the timeout, until the barrier is opened or started over.
+ */
+public final class ReadinessBarrier {
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private volatile CountDownLatch latch = new CountDownLatch(1);
+    private volatile long startTime = System.nanoTime();
+    // Time from start until ready, null if not ready yet
+    private volatile Duration timeToReady;
+    // Since when the hot credentials are being converted, e.g. after a relist or a swap of the informers
+    private volatile long hotStartTime = startTime;
+    // Time from the hot start until the hot credentials are available, null if not available yet
+    private volatile Duration hotTimeToReady;
+    private volatile boolean restored;
+    private volatile boolean degraded;
+
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * Start over, lookups will wait until {@link #markReady()} is called.
+     */
+    public synchronized void reset() {
+        if (latch.getCount() == 0) {
+            latch = new CountDownLatch(1);
+        }
+        startTime = System.nanoTime();
+        timeToReady = null;
+        hotStartTime = startTime;
+        hotTimeToReady = null;
+        restored = false;
+        degraded = false;
+    }
+
+    /**
+     * Credentials are served from a persisted snapshot, lookups don't need to wait for the informers anymore.
+     */
+    public void markRestored() {
+        restored = true;
+    }
+
+    /**
+     * @return true if the barrier was opened by this call.
+     */
+    public synchronized boolean markReady() {
+        if (timeToReady != null) {
+            return false;
+        }
+        timeToReady = Duration.ofNanos(System.nanoTime() - startTime);
+        latch.countDown();
+        return true;
+    }
+
+    public boolean isReady() {
+        return timeToReady != null;
+    }
+
+    /**
+     * The hot credentials are being converted again, lookups are not affected.
+     * @param since the {@link System#nanoTime()} the conversion started at.
+     */
+    public synchronized void resetHot(long since) {
+        hotStartTime = since;
+        hotTimeToReady = null;
+    }
+
+    /**
+     * The informers have synced and the secrets in hot namespaces are reconciled, even if other secrets are not.
+     * @return true if the hot credentials became available by this call.
+     */
+    public synchronized boolean markHotReady() {
+        if (hotTimeToReady != null) {
+            return false;
+        }
+        hotTimeToReady = Duration.ofNanos(System.nanoTime() - hotStartTime);
+        return true;
+    }
+
+    public boolean isHotReady() {
+        return hotTimeToReady != null;
+    }
+
+    /**
+     * @return true if a lookup has timed out, lookups don't wait anymore until the barrier is opened.
+     */
+    public boolean isDegraded() {
+        return degraded && !isReady();
+    }
+
+    /**
+     * Wait until the barrier is opened, the restored snapshot is served or the timeout elapses. The first timeout
+     * degrades the barrier, later lookups don't wait.
+     * @param timeout maximum time to wait, lookups never wait if it is not positive.
+     * @param poll checks the readiness between waits, so the barrier is opened even if no event arrives.
+     * @return false if this lookup has timed out and degraded the barrier, true otherwise.
+     */
+    public boolean await(Duration timeout, Runnable poll) {
+        if (isReady() || restored || degraded || timeout.isZero() || timeout.isNegative()) {
+            if (degraded && !isReady()) {
+                poll.run();
+            }
+            return true;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        waits.incrementAndGet();
+        try {
+            CountDownLatch current = latch;
+            while (!isReady() && !restored && !degraded) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts.incrementAndGet();
+                    return !markDegraded();
+                }
+                poll.run();
+                current.await(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS)), TimeUnit.NANOSECONDS);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return isReady();
+        } finally {
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return true if the barrier was degraded by this call.
+     */
+    private synchronized boolean markDegraded() {
+        if (degraded || isReady()) {
+            return false;
+        }
+        degraded = true;
+        return true;
+    }
+
+    /**
+     * @return time from start until ready, or null if not ready yet.
+     */
+    public Duration getTimeToReady() {
+        return timeToReady;
+    }
+
+    /**
+     * @return time from the last start, relist or swap until the hot credentials are available, or null if not
+     * available yet.
+     */
+    public Duration getHotTimeToReady() {
+        return hotTimeToReady;
+    }
+
+    /**
+     * @return number of lookups that waited for the barrier.
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    /**
+     * @return total time lookups spent waiting for the barrier.
+     */
+    public Duration getWaitTime() {
+        return Duration.ofNanos(waitNanos.get());
+    }
+
+    /**
+     * @return number of lookups that gave up waiting and were served from credentials that are not ready.
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+}
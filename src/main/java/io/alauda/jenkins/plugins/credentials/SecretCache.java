@@ -0,0 +1,174 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import com.cloudbees.plugins.credentials.SecretBytes;
+import hudson.util.Secret;
+import jenkins.util.SystemProperties;
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of {@link Secret}s and {@link SecretBytes} keyed by the digest of their plaintext, so secrets
+ * that are copied into many namespaces share the same instance instead of creating one per copy.
+ * <p>
+ * Credentials in the index retain the keys of the entries they were converted with, an entry is evicted as soon as
+ * the last credentials retaining it is removed, so the plaintext digest is not kept longer than the secret exists.
+ */
+public final class SecretCache {
+
+    private static final int MAX_SIZE = SystemProperties.getInteger(SecretCache.class.getName() + ".maxSize", 4096);
+
+    private static final String SECRET_PREFIX = "secret:";
+    private static final String BYTES_PREFIX = "bytes:";
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong releases = new AtomicLong();
+
+    private SecretCache() {}
+
+    private static final class Entry {
+        private final Object value;
+        private int references;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * @param plaintext the plaintext of the secret, its position is not changed.
+     * @param loader creates the secret if it is not cached.
+     * @return the cached secret, or the secret created by the loader.
+     */
+    public static Secret get(ByteBuffer plaintext, Supplier<Secret> loader) {
+        return get(secretKey(plaintext), loader);
+    }
+
+    /**
+     * @return the key of the {@link Secret} of the plaintext, or null if the cache is disabled.
+     */
+    static String secretKey(ByteBuffer plaintext) {
+        return MAX_SIZE <= 0 ? null : SECRET_PREFIX + digest(plaintext);
+    }
+
+    /**
+     * @return the key of the {@link SecretBytes} of the concatenated parts, or null if the cache is disabled.
+     */
+    static String bytesKey(ByteBuffer... parts) {
+        return MAX_SIZE <= 0 ? null : BYTES_PREFIX + digest(parts);
+    }
+
+    /**
+     * @param key key of the entry, or null to always create the value.
+     * @param loader creates the value if it is not cached.
+     * @return the cached value, or the value created by the loader.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(String key, Supplier<T> loader) {
+        if (key == null) {
+            return loader.get();
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        T value = loader.get();
+        synchronized (entries) {
+            Entry existing = entries.putIfAbsent(key, new Entry(value));
+            return existing == null ? value : (T) existing.value;
+        }
+    }
+
+    /**
+     * Count a reference from credentials put in the index to the entries of the keys.
+     */
+    public static void retain(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null) {
+                    entry.references++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop a reference from credentials removed from the index, entries without references are evicted.
+     */
+    public static void release(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        synchronized (entries) {
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null && --entry.references <= 0) {
+                    entries.remove(key);
+                    releases.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    public static int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static int getMaxSize() {
+        return MAX_SIZE;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of entries evicted because the last credentials referencing them were removed.
+     */
+    public static long getReleases() {
+        return releases.get();
+    }
+
+    private static String digest(ByteBuffer... parts) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            for (ByteBuffer part : parts) {
+                messageDigest.update(part.duplicate());
+            }
+            return Hex.encodeHexString(messageDigest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+}
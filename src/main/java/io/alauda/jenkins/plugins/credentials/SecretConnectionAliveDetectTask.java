@@ -4,23 +4,26 @@ import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.model.AsyncPeriodicWork;
 import hudson.model.TaskListener;
-import io.kubernetes.client.openapi.ApiException;
-import io.kubernetes.client.openapi.apis.CoreV1Api;
-import io.kubernetes.client.openapi.models.V1SecretList;
+import io.alauda.jenkins.plugins.credentials.watch.SecretWatchManager;
+import jenkins.util.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Checks the progress of the watches. The API server sends bookmarks periodically, so a watch that sends neither
+ * events nor bookmarks for a while is stalled, it will be closed and the informer watches again from the last
+ * resourceVersion it has seen.
+ */
 @Extension
 public class SecretConnectionAliveDetectTask extends AsyncPeriodicWork {
     private static final Logger logger = LoggerFactory.getLogger(SecretConnectionAliveDetectTask.class);
 
-    private AtomicInteger heartbeatLostCount = new AtomicInteger();
+    private static final Duration STALL_TIMEOUT = Duration.ofSeconds(
+            SystemProperties.getLong(SecretConnectionAliveDetectTask.class.getName() + ".stallTimeoutSeconds", 180L));
 
     public SecretConnectionAliveDetectTask() {
         super("Kubernetes watch connection detect task");
@@ -28,8 +31,6 @@ public class SecretConnectionAliveDetectTask extends AsyncPeriodicWork {
 
     @Override
     protected void execute(TaskListener listener) throws IOException, InterruptedException {
-        LocalDateTime now = LocalDateTime.now();
-
         logger.debug("Starting to check if the watch connection of resource Secret is alive");
 
         ExtensionList<KubernetesCredentialsProvider> credentialsProviders = ExtensionList.lookup(KubernetesCredentialsProvider.class);
@@ -38,40 +39,19 @@ public class SecretConnectionAliveDetectTask extends AsyncPeriodicWork {
             return;
         }
 
-        LocalDateTime lastEventComingTime = credentialsProviders.get(0).getLastEventComingTime();
-        // controller might not be initialized, or no resource exist in k8s so that we cannot receive event
-        if (lastEventComingTime == null) {
-            try {
-                // if there has resource exists but we didn't receive any event, the watch connection might be broken
-                if (hasSecretExistsInK8s()) {
-                    int count = heartbeatLostCount.incrementAndGet();
-                    logger.warn("The watch connection of resource Secret seems broken, retry count {}",  count);
-                } else {
-                    logger.debug("There are no resource Secret exists in k8s, will skip this check for it");
-                    return;
-                }
-            } catch (ApiException e) {
-                logger.warn("Unable to check if resource Secret exists in k8s, will skip this check for it, reason: {}",  e.getMessage());
-                return;
-            }
-        } else {
-            Duration elapsed = Duration.between(lastEventComingTime, now);
-
-            // the apiserver will use heartbeat to update resource per 30 seconds, so if we didn't receive an update event in last 1 minute,
-            // the watch connection might broken
-            if (!elapsed.minus(Duration.ofMinutes(1)).isNegative()) {
-                int count = heartbeatLostCount.incrementAndGet();
-                logger.warn("The watch connection of resource Secret seems broken, " +
-                        "last event coming at {}, time since last event coming {}s, retry count {}",
-                    lastEventComingTime, elapsed.getSeconds(), count);
-            } else {
-                heartbeatLostCount.set(0);
-            }
+        // controller might not be initialized
+        KubernetesCredentialsProvider provider = credentialsProviders.get(0);
+        SecretWatchManager manager = provider.getWatchManager();
+        if (manager == null) {
+            return;
         }
 
-        if (heartbeatLostCount.get() > 3) {
-            heartbeatLostCount.set(0);
-            credentialsProviders.get(0).restart();
+        // watches resumed from a snapshot are confirmed by their progress
+        provider.pruneRestored();
+
+        int stalled = manager.rewatchStalled(STALL_TIMEOUT);
+        if (stalled > 0) {
+            logger.warn("{} watches of resource Secret were stalled and will be watched again", stalled);
         }
     }
 
@@ -79,25 +59,4 @@ public class SecretConnectionAliveDetectTask extends AsyncPeriodicWork {
     public long getRecurrencePeriod() {
         return TimeUnit.MINUTES.toMillis(1);
     }
-
-    public boolean hasSecretExistsInK8s() throws ApiException {
-        CoreV1Api api = new CoreV1Api();
-        V1SecretList secretList = api.listSecretForAllNamespaces(
-                null,
-                null,
-                null,
-                null,
-                1,
-                null,
-                "0",
-                null,
-                null,
-                null);
-
-        if (secretList == null || secretList.getItems() == null || secretList.getItems().size() == 0) {
-            return false;
-        }
-
-        return true;
-    }
 }
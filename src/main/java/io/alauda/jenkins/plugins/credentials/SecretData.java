@@ -0,0 +1,223 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import com.cloudbees.plugins.credentials.SecretBytes;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.util.Secret;
+import io.alauda.jenkins.plugins.credentials.convertor.CredentialsConversionException;
+import io.kubernetes.client.openapi.models.V1Secret;
+import jenkins.util.SystemProperties;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Byte-oriented view of the data of a {@link V1Secret}. Key bindings are resolved once per secret, values are
+ * exposed as read-only {@link ByteBuffer}s. Text values are decoded into a {@link String} before they are
+ * encrypted into {@link Secret}s, binary values are copied into {@link SecretBytes} through a buffer that is
+ * zeroed after use.
+ */
+public final class SecretData {
+
+    private static final Logger LOG = Logger.getLogger(SecretData.class.getName());
+
+    /** Annotation prefix for the optional custom mapping of data */
+    private static final String JENKINS_IO_CREDENTIALS_KEYBINDING_ANNOTATION_PREFIX = "jenkins.io/credentials-keybinding-";
+
+    /** Maximum size of the data of file-like credentials, Kubernetes limits secrets to 1 MiB */
+    public static final int MAX_FILE_BYTES = SystemProperties.getInteger(SecretData.class.getName() + ".maxFileBytes", 1024 * 1024);
+
+    private final Map<String, byte[]> data;
+    // Custom key names keyed by the default key names
+    private final Map<String, String> keyBindings;
+    // Keys of the SecretCache entries the credentials are converted with
+    private final List<String> cacheKeys = new ArrayList<>(2);
+
+    private SecretData(Map<String, byte[]> data, Map<String, String> keyBindings) {
+        this.data = data;
+        this.keyBindings = keyBindings;
+    }
+
+    /**
+     * @return the view of the data of the secret, empty if the secret has no data.
+     */
+    public static SecretData of(V1Secret secret) {
+        Map<String, byte[]> data = secret.getData() == null ? Collections.emptyMap() : secret.getData();
+        Map<String, String> annotations = secret.getMetadata().getAnnotations();
+        if (annotations == null || annotations.isEmpty()) {
+            return new SecretData(data, Collections.emptyMap());
+        }
+
+        Map<String, String> keyBindings = new HashMap<>();
+        for (Map.Entry<String, String> annotation : annotations.entrySet()) {
+            if (!annotation.getKey().startsWith(JENKINS_IO_CREDENTIALS_KEYBINDING_ANNOTATION_PREFIX)) {
+                continue;
+            }
+            String key = annotation.getKey().substring(JENKINS_IO_CREDENTIALS_KEYBINDING_ANNOTATION_PREFIX.length());
+            if (annotation.getValue() == null || annotation.getValue().isEmpty()) {
+                LOG.log(Level.WARNING, "Secret {0} contains a mapping annotation {1} but has no entry - mapping will "
+                                + "not be performed",
+                        new Object[]{secret.getMetadata().getName(), annotation.getKey()});
+                continue;
+            }
+            keyBindings.put(key, annotation.getValue());
+        }
+        return new SecretData(data, keyBindings);
+    }
+
+    /**
+     * @return true if the secret has no data at all.
+     */
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * @return the custom mapping for the key or the key itself if there is no custom mapping.
+     */
+    public String getKeyName(String key) {
+        return keyBindings.getOrDefault(key, key);
+    }
+
+    /**
+     * @return true if there is data for the key (or the mapped key if key is mapped).
+     */
+    public boolean contains(String key) {
+        return data.get(getKeyName(key)) != null;
+    }
+
+    /**
+     * @return a read-only view of the data for the key (or the mapped key if key is mapped), or null if not present.
+     */
+    @CheckForNull
+    public ByteBuffer getBytes(String key) {
+        byte[] value = data.get(getKeyName(key));
+        return value == null ? null : ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return a read-only view of the data for the key (or the mapped key if key is mapped).
+     * @throws CredentialsConversionException if the data was not present.
+     */
+    public ByteBuffer getNonNullBytes(String key, String exceptionMessage) throws CredentialsConversionException {
+        return ByteBuffer.wrap(getNonNullValue(key, exceptionMessage)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode data that is not sensitive, e.g. a username.
+     * @throws CredentialsConversionException if the data was not present.
+     */
+    public String getNonNullString(String key, String exceptionMessage) throws CredentialsConversionException {
+        return new String(getNonNullValue(key, exceptionMessage), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode sensitive data into an encrypted {@link Secret}. Identical data shares the same {@link Secret}
+     * through the {@link SecretCache}, so it is only decoded when the cache misses.
+     * @throws CredentialsConversionException if the data was not present.
+     */
+    public Secret getNonNullSecret(String key, String exceptionMessage) throws CredentialsConversionException {
+        byte[] value = getNonNullValue(key, exceptionMessage);
+        String cacheKey = SecretCache.secretKey(ByteBuffer.wrap(value).asReadOnlyBuffer());
+        if (cacheKey != null) {
+            cacheKeys.add(cacheKey);
+        }
+        return SecretCache.get(cacheKey, () -> Secret.fromString(new String(value, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return the encrypted {@link Secret} of the data for the key (or the mapped key if key is mapped),
+     * or empty if not present.
+     */
+    public Optional<Secret> getOptionalSecret(String key, String exceptionMessage) throws CredentialsConversionException {
+        if (!contains(key)) {
+            return Optional.empty();
+        }
+        return Optional.of(getNonNullSecret(key, exceptionMessage));
+    }
+
+    /**
+     * Copy binary data into encrypted {@link SecretBytes}. Identical data shares the same
+     * {@link SecretBytes} through the {@link SecretCache}.
+     * @param maxBytes the maximum size of the data.
+     * @throws CredentialsConversionException if the data was not present or is larger than the maximum size.
+     */
+    public SecretBytes getNonNullSecretBytes(String key, String exceptionMessage, int maxBytes) throws CredentialsConversionException {
+        return getSecretBytes(maxBytes, getNonNullBytes(key, exceptionMessage));
+    }
+
+    /**
+     * Concatenate the parts into encrypted {@link SecretBytes}, the plaintext is copied only once into a buffer
+     * that is zeroed after encryption. Identical parts share the same {@link SecretBytes} through the
+     * {@link SecretCache}.
+     * @param maxBytes the maximum size of all parts.
+     * @throws CredentialsConversionException if the parts are larger than the maximum size.
+     */
+    public SecretBytes getSecretBytes(int maxBytes, ByteBuffer... parts) throws CredentialsConversionException {
+        long size = 0;
+        for (ByteBuffer part : parts) {
+            size += part.remaining();
+        }
+        if (size > maxBytes) {
+            throw new CredentialsConversionException("data is " + size + " bytes, larger than the limit of " + maxBytes + " bytes");
+        }
+
+        int total = (int) size;
+        String cacheKey = SecretCache.bytesKey(parts);
+        if (cacheKey != null) {
+            cacheKeys.add(cacheKey);
+        }
+        return SecretCache.get(cacheKey, () -> toSecretBytes(total, parts));
+    }
+
+    /**
+     * @return keys of the {@link SecretCache} entries used by the conversion, the credentials put in the index
+     * retain them.
+     */
+    public List<String> getCacheKeys() {
+        return Collections.unmodifiableList(cacheKeys);
+    }
+
+    private byte[] getNonNullValue(String key, String exceptionMessage) throws CredentialsConversionException {
+        String mappedKey = getKeyName(key);
+        byte[] value = data.get(mappedKey);
+        SecretUtils.requireNonNull(value, exceptionMessage, mappedKey.equals(key) ? null : mappedKey);
+        return value;
+    }
+
+    private static SecretBytes toSecretBytes(int size, ByteBuffer... parts) {
+        byte[] plain = new byte[size];
+        int offset = 0;
+        for (ByteBuffer part : parts) {
+            int length = part.remaining();
+            part.duplicate().get(plain, offset, length);
+            offset += length;
+        }
+        try {
+            return SecretBytes.fromBytes(plain);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+    }
+
+    /**
+     * Zero the data of the secret once it has been converted and is not referenced anymore.
+     */
+    public static void wipe(V1Secret secret) {
+        if (secret.getData() != null) {
+            secret.getData().values().forEach(value -> {
+                if (value != null) {
+                    Arrays.fill(value, (byte) 0);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Namespaces needed by scopes might change at any time, this task will start or stop the informers accordingly
+ * when namespaced watch is enabled.
+ */
+@Extension
+public class WatchedNamespacesSyncTask extends AsyncPeriodicWork {
+    private static final Logger logger = LoggerFactory.getLogger(WatchedNamespacesSyncTask.class);
+
+    public WatchedNamespacesSyncTask() {
+        super("Kubernetes watched namespaces sync task");
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!KubernetesCredentialsProviderConfiguration.get().getCompiled().isNamespacedWatch()) {
+            return;
+        }
+
+        ExtensionList<KubernetesCredentialsProvider> credentialsProviders = ExtensionList.lookup(KubernetesCredentialsProvider.class);
+        if (credentialsProviders.size() == 0) {
+            logger.info("Unable to find KubernetesCredentialsProvider instance, will skip this sync");
+            return;
+        }
+
+        credentialsProviders.get(0).syncWatchedNamespaces();
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(1);
+    }
+}
@@ -0,0 +1,388 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.kubernetes.client.extended.workqueue.RateLimitingQueue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Rate limiting work queue that hands out items by priority, lower values first, and in the order they were added
+ * within the same priority. Otherwise it behaves like the default queue of the client: an item is queued at most
+ * once, an item added while it is processed is queued again when it is done, delayed adds of an item keep the
+ * earliest time, and failed items are retried with exponential backoff. Debounced adds of an item push it back
+ * instead, until no add has come within the window or the max wait has passed since the first one.
+ * <p>
+ * The priority of an item is evaluated when it is added, and only raised by later adds until a worker takes it.
+ * Items whose priorities are lower than the hot priority are hot, they are pending until they are done.
+ */
+public class PriorityWorkQueue<T> implements RateLimitingQueue<T> {
+
+    private static final long BASE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long MAX_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1000);
+
+    private final ToIntFunction<T> priorityFunction;
+    private final int hotPriority;
+    private final Runnable onHotDrained;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final PriorityQueue<Entry<T>> ready = new PriorityQueue<>();
+    // Items that are ready, or will be ready again when they are done
+    private final Set<T> dirty = new HashSet<>();
+    private final Set<T> processing = new HashSet<>();
+    private final Set<T> hotProcessing = new HashSet<>();
+    // Priorities of items that are ready or delayed
+    private final Map<T, Integer> priorities = new HashMap<>();
+    private final Map<T, Long> delayedUntil = new HashMap<>();
+    // Time of the first debounced add of delayed items, they are not delayed longer than the max wait from it
+    private final Map<T, Long> debouncedSince = new HashMap<>();
+    private final Map<T, Integer> failures = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), PriorityWorkQueue.class.getSimpleName()));
+    private long sequence;
+    // Number of workers to hand null instead of waiting for items
+    private int wakeUps;
+    private int hotWaiting;
+    private boolean shuttingDown;
+
+    /**
+     * @param priorityFunction priority of an item, lower values are handed out first.
+     * @param hotPriority items whose priorities are lower than it are counted as hot.
+     * @param onHotDrained runs when the last pending hot item is done.
+     */
+    public PriorityWorkQueue(ToIntFunction<T> priorityFunction, int hotPriority, Runnable onHotDrained) {
+        this.priorityFunction = priorityFunction;
+        this.hotPriority = hotPriority;
+        this.onHotDrained = onHotDrained;
+    }
+
+    @Override
+    public void add(T item) {
+        lock.lock();
+        try {
+            if (shuttingDown) {
+                return;
+            }
+
+            boolean raised = track(item);
+            if (dirty.contains(item)) {
+                if (raised && !processing.contains(item)) {
+                    ready.removeIf(entry -> entry.item.equals(item));
+                    enqueue(item);
+                }
+                return;
+            }
+
+            dirty.add(item);
+            if (!processing.contains(item)) {
+                enqueue(item);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addAfter(T item, Duration duration) {
+        if (duration.isZero() || duration.isNegative()) {
+            add(item);
+            return;
+        }
+
+        long readyAt = System.nanoTime() + duration.toNanos();
+        lock.lock();
+        try {
+            if (shuttingDown) {
+                return;
+            }
+
+            Long existing = delayedUntil.get(item);
+            track(item);
+            if (existing != null && existing - readyAt <= 0) {
+                return;
+            }
+            delayedUntil.put(item, readyAt);
+        } finally {
+            lock.unlock();
+        }
+        delayer.schedule(() -> fire(item, readyAt), duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Add the item once no debounced add of it has come within the window. Every add within the window pushes the
+     * item back, but not later than the max wait after the first add, so an item that keeps changing is still
+     * processed.
+     */
+    public void addDebounced(T item, Duration window, Duration maxWait) {
+        if (window.isZero() || window.isNegative()) {
+            add(item);
+            return;
+        }
+
+        long now = System.nanoTime();
+        long readyAt;
+        lock.lock();
+        try {
+            if (shuttingDown) {
+                return;
+            }
+
+            track(item);
+            Long first = debouncedSince.putIfAbsent(item, now);
+            long latest = (first == null ? now : first) + Math.max(window.toNanos(), maxWait.toNanos());
+            readyAt = now + window.toNanos();
+            if (readyAt - latest > 0) {
+                readyAt = latest;
+            }
+            Long existing = delayedUntil.get(item);
+            if (existing != null && existing == readyAt) {
+                return;
+            }
+            delayedUntil.put(item, readyAt);
+        } finally {
+            lock.unlock();
+        }
+        long fireAt = readyAt;
+        delayer.schedule(() -> fire(item, fireAt), Math.max(0, readyAt - now), TimeUnit.NANOSECONDS);
+    }
+
+    private void fire(T item, long readyAt) {
+        lock.lock();
+        try {
+            // delayed again to another time, that schedule adds it
+            Long until = delayedUntil.get(item);
+            if (until == null || until != readyAt) {
+                return;
+            }
+            delayedUntil.remove(item);
+            debouncedSince.remove(item);
+            add(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void addRateLimited(T item) {
+        int failed = failures.merge(item, 1, Integer::sum) - 1;
+        // casting a huge double saturates instead of overflowing
+        long delay = Math.min(MAX_DELAY_NANOS, (long) (BASE_DELAY_NANOS * Math.pow(2, failed)));
+        addAfter(item, Duration.ofNanos(delay));
+    }
+
+    @Override
+    public void forget(T item) {
+        failures.remove(item);
+    }
+
+    @Override
+    public int numRequeues(T item) {
+        return failures.getOrDefault(item, 0);
+    }
+
+    /**
+     * @return the next item, or null if the queue is shutting down or the worker is woken up by
+     * {@link #wakeUp(int)} while no item is ready.
+     */
+    @Override
+    public T get() throws InterruptedException {
+        lock.lock();
+        try {
+            while (ready.isEmpty() && !shuttingDown && wakeUps == 0) {
+                notEmpty.await();
+            }
+            if (ready.isEmpty()) {
+                if (wakeUps > 0) {
+                    wakeUps--;
+                }
+                return null;
+            }
+
+            T item = ready.poll().item;
+            processing.add(item);
+            dirty.remove(item);
+            if (!delayedUntil.containsKey(item) && untrack(item)) {
+                hotProcessing.add(item);
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void done(T item) {
+        boolean drained;
+        lock.lock();
+        try {
+            processing.remove(item);
+            drained = hotProcessing.remove(item) && hotWaiting == 0 && hotProcessing.isEmpty();
+            if (dirty.contains(item)) {
+                enqueue(item);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (drained) {
+            onHotDrained.run();
+        }
+    }
+
+    /**
+     * @return number of items that are ready or delayed.
+     */
+    @Override
+    public int length() {
+        lock.lock();
+        try {
+            int delayed = 0;
+            for (T item : delayedUntil.keySet()) {
+                // a delayed item might be ready at the same time
+                if (!dirty.contains(item) || processing.contains(item)) {
+                    delayed++;
+                }
+            }
+            return ready.size() + delayed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the item is delayed, or will be ready again when it is done.
+     */
+    public boolean isPending(T item) {
+        lock.lock();
+        try {
+            return delayedUntil.containsKey(item) || dirty.contains(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of items that are ready to be taken by workers.
+     */
+    public int getReady() {
+        lock.lock();
+        try {
+            return ready.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand null to that many workers that wait for items or are about to, e.g. so surplus workers can retire
+     * without waiting for the next item.
+     */
+    public void wakeUp(int workers) {
+        lock.lock();
+        try {
+            wakeUps = Math.max(wakeUps, workers);
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void shutDown() {
+        lock.lock();
+        try {
+            shuttingDown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        delayer.shutdownNow();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        lock.lock();
+        try {
+            return shuttingDown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of hot items that are ready, delayed or being processed.
+     */
+    public int getHotPending() {
+        lock.lock();
+        try {
+            return hotWaiting + hotProcessing.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(T item) {
+        Integer priority = priorities.get(item);
+        ready.add(new Entry<>(priority == null ? priorityFunction.applyAsInt(item) : priority, sequence++, item));
+        notEmpty.signal();
+    }
+
+    /**
+     * @return true if the priority of the waiting item is raised.
+     */
+    private boolean track(T item) {
+        int priority = priorityFunction.applyAsInt(item);
+        Integer previous = priorities.get(item);
+        if (previous != null && previous <= priority) {
+            return false;
+        }
+
+        priorities.put(item, priority);
+        if (priority < hotPriority && (previous == null || previous >= hotPriority)) {
+            hotWaiting++;
+        }
+        return previous != null;
+    }
+
+    /**
+     * @return true if the item was hot.
+     */
+    private boolean untrack(T item) {
+        Integer priority = priorities.remove(item);
+        if (priority != null && priority < hotPriority) {
+            hotWaiting--;
+            return true;
+        }
+        return false;
+    }
+
+    private static final class Entry<T> implements Comparable<Entry<T>> {
+        private final int priority;
+        private final long sequence;
+        private final T item;
+
+        Entry(int priority, long sequence, T item) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int result = Integer.compare(priority, other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.kubernetes.client.extended.controller.Controller;
+import io.kubernetes.client.extended.controller.reconciler.Reconciler;
+import io.kubernetes.client.extended.controller.reconciler.Request;
+import io.kubernetes.client.extended.controller.reconciler.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controller whose number of workers can be changed while it runs. In adaptive mode, workers are added when the
+ * backlog of the work queue cannot be drained within a second at the current reconcile latency, and removed one
+ * at a time while the backlog is small, between one worker and the maximum.
+ */
+public class ScalingController implements Controller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScalingController.class);
+
+    private static final long SCALE_INTERVAL_MILLIS = 1000;
+    // Weight of the latest reconcile in the moving average of latency
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final String name;
+    private final Reconciler reconciler;
+    private final TrackingWorkQueue<Request> workQueue;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scaler;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final Runnable flush;
+    private final int batchSize;
+    private final AtomicInteger sinceFlush = new AtomicInteger();
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int targetWorkers;
+    private volatile int maxWorkers;
+    private volatile boolean adaptive;
+    private volatile boolean running;
+    private volatile boolean shuttingDown;
+    // Moving average of reconcile latency in nanoseconds, updated by all workers
+    private final AtomicLong latencyNanos = new AtomicLong();
+
+    /**
+     * @param workerCount number of workers, or the maximum number of workers in adaptive mode.
+     * @param flush publishes the changes of reconciles, runs after every batch of reconciles and whenever
+     *              the work queue has no ready requests.
+     * @param batchSize maximum number of reconciles between flushes.
+     */
+    public ScalingController(String name, Reconciler reconciler, TrackingWorkQueue<Request> workQueue,
+                             int workerCount, boolean adaptive, Runnable flush, int batchSize) {
+        this.name = name;
+        this.flush = flush;
+        this.batchSize = Math.max(1, batchSize);
+        this.reconciler = reconciler;
+        this.workQueue = workQueue;
+        this.workers = Executors.newCachedThreadPool(new NamingThreadFactory(new DaemonThreadFactory(), name));
+        this.scaler = Executors.newSingleThreadScheduledExecutor(new NamingThreadFactory(new DaemonThreadFactory(), name + "-scaler"));
+        this.maxWorkers = Math.max(1, workerCount);
+        this.adaptive = adaptive;
+        this.targetWorkers = adaptive ? 1 : maxWorkers;
+    }
+
+    /**
+     * Start the workers and block until the controller is shut down.
+     */
+    @Override
+    public void run() {
+        running = true;
+        scale(targetWorkers);
+        scaler.scheduleWithFixedDelay(this::adapt, SCALE_INTERVAL_MILLIS, SCALE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shuttingDown = true;
+        workQueue.shutDown();
+        scaler.shutdownNow();
+        workers.shutdown();
+        stopped.countDown();
+    }
+
+    /**
+     * Wait for the reconciles in flight after {@link #shutdown()}, workers stop once their reconcile is done.
+     * @return true if all workers stopped within the timeout.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return workers.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Change the number of workers while running.
+     * @param workerCount number of workers, or the maximum number of workers in adaptive mode.
+     */
+    public synchronized void setWorkers(int workerCount, boolean adaptive) {
+        this.maxWorkers = Math.max(1, workerCount);
+        this.adaptive = adaptive;
+        int target = adaptive ? Math.min(targetWorkers, maxWorkers) : maxWorkers;
+        logger.info("[{}] Workers set to {}{}", name, maxWorkers, adaptive ? " at most" : "");
+        scale(target);
+    }
+
+    void adapt() {
+        if (!adaptive) {
+            return;
+        }
+
+        int backlog = workQueue.getReady() + inFlight.get();
+        // workers needed to drain the backlog within the scale interval at the current latency
+        int needed = (int) Math.ceil(backlog * (double) latencyNanos.get() / TimeUnit.MILLISECONDS.toNanos(SCALE_INTERVAL_MILLIS));
+        needed = Math.max(1, Math.min(maxWorkers, needed));
+
+        int target = targetWorkers;
+        if (needed > target) {
+            scale(needed);
+        } else if (needed < target) {
+            // shrink slowly, so a short pause of events doesn't stop the workers of a rotation storm
+            scale(target - 1);
+        }
+    }
+
+    private synchronized void scale(int target) {
+        int previous = targetWorkers;
+        targetWorkers = target;
+        if (previous != target) {
+            logger.debug("[{}] Scaling workers from {} to {}", name, previous, target);
+        }
+        if (!running || shuttingDown) {
+            return;
+        }
+
+        // surplus workers retire by themselves before they take the next request, idle ones are woken up to retire
+        int surplus = activeWorkers.get() - target;
+        if (surplus > 0) {
+            workQueue.wakeUp(surplus);
+        }
+        while (activeWorkers.get() < target) {
+            activeWorkers.incrementAndGet();
+            workers.execute(this::work);
+        }
+    }
+
+    private void work() {
+        // a retiring worker has already given up its slot
+        boolean retired = false;
+        try {
+            while (true) {
+                int active = activeWorkers.get();
+                if (shuttingDown || active > targetWorkers) {
+                    if (activeWorkers.compareAndSet(active, active - 1)) {
+                        retired = true;
+                        return;
+                    }
+                    continue;
+                }
+
+                Request request;
+                try {
+                    request = workQueue.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (request == null) {
+                    continue;
+                }
+
+                // a failing request or flush must not stop the worker, the next flush publishes what is staged
+                try {
+                    process(request);
+                    if (sinceFlush.incrementAndGet() >= batchSize || workQueue.getReady() == 0) {
+                        sinceFlush.set(0);
+                        flush.run();
+                    }
+                } catch (RuntimeException e) {
+                    logger.error("[{}] Worker failed while processing {}", name, request, e);
+                }
+            }
+        } finally {
+            if (!retired) {
+                activeWorkers.decrementAndGet();
+            }
+        }
+    }
+
+    private void process(Request request) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Result result = reconciler.reconcile(request);
+            if (result.isRequeue()) {
+                if (result.getRequeueAfter() == null) {
+                    workQueue.addRateLimited(request);
+                } else {
+                    workQueue.addAfter(request, result.getRequeueAfter());
+                }
+            } else {
+                workQueue.forget(request);
+            }
+        } catch (Throwable t) {
+            logger.error("[{}] Reconciler aborted unexpectedly for {}, will retry", name, request, t);
+            workQueue.addRateLimited(request);
+        } finally {
+            workQueue.done(request);
+            inFlight.decrementAndGet();
+            long elapsed = System.nanoTime() - start;
+            latencyNanos.updateAndGet(latency -> latency == 0 ? elapsed
+                    : Math.round(latency * (1 - LATENCY_WEIGHT) + elapsed * LATENCY_WEIGHT));
+        }
+    }
+
+    /**
+     * @return number of requests waiting in the work queue, delayed ones included.
+     */
+    public int getQueueDepth() {
+        return workQueue.length();
+    }
+
+    /**
+     * @return number of requests being reconciled.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return how long the oldest waiting request has been queued, including delays.
+     */
+    public Duration getOldestItemAge() {
+        return workQueue.getOldestAge();
+    }
+
+    /**
+     * @return number of requests coalesced into requests that were already waiting.
+     */
+    public long getCoalesced() {
+        return workQueue.getCoalesced();
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    /**
+     * @return the moving average of reconcile latency.
+     */
+    public Duration getReconcileLatency() {
+        return Duration.ofNanos(latencyNanos.get());
+    }
+}
@@ -0,0 +1,197 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import io.kubernetes.client.extended.workqueue.RateLimitingQueue;
+import io.kubernetes.client.extended.workqueue.WorkQueue;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records since when each item has been waiting in the queue, so the age of the backlog can be reported.
+ * An item waits from the first time it is added until a worker takes it, delays of the item are included.
+ * Adding an item that is already waiting is coalesced into the waiting one.
+ */
+public class TrackingWorkQueue<T> implements RateLimitingQueue<T> {
+
+    private final PriorityWorkQueue<T> delegate;
+    private final Map<T, Long> queuedSince = new ConcurrentHashMap<>();
+    // Since when the items taken by workers had been waiting, until the workers are done with them
+    private final Map<T, Long> processingSince = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public TrackingWorkQueue(PriorityWorkQueue<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void add(T item) {
+        track(item);
+        delegate.add(item);
+    }
+
+    @Override
+    public void addAfter(T item, Duration duration) {
+        track(item);
+        delegate.addAfter(item, duration);
+    }
+
+    @Override
+    public void addRateLimited(T item) {
+        track(item);
+        delegate.addRateLimited(item);
+    }
+
+    @Override
+    public T get() throws InterruptedException {
+        T item = delegate.get();
+        if (item != null) {
+            Long since = queuedSince.remove(item);
+            if (since != null) {
+                processingSince.put(item, since);
+                // the delayed add of the item is added to the queue without being tracked, it waits since then too
+                if (delegate.isPending(item)) {
+                    queuedSince.putIfAbsent(item, since);
+                }
+            }
+        }
+        return item;
+    }
+
+    @Override
+    public void done(T item) {
+        processingSince.remove(item);
+        delegate.done(item);
+    }
+
+    @Override
+    public void forget(T item) {
+        delegate.forget(item);
+    }
+
+    @Override
+    public int numRequeues(T item) {
+        return delegate.numRequeues(item);
+    }
+
+    /**
+     * @return number of items that are ready or delayed.
+     */
+    @Override
+    public int length() {
+        return delegate.length();
+    }
+
+    /**
+     * @return number of items that are ready to be taken by workers.
+     */
+    public int getReady() {
+        return delegate.getReady();
+    }
+
+    /**
+     * Same as {@link PriorityWorkQueue#wakeUp(int)}.
+     */
+    public void wakeUp(int workers) {
+        delegate.wakeUp(workers);
+    }
+
+    @Override
+    public void shutDown() {
+        delegate.shutDown();
+        queuedSince.clear();
+        processingSince.clear();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return delegate.isShuttingDown();
+    }
+
+    /**
+     * @return a view of the queue that delays the items it adds until no add of them has come within the window,
+     * or the max wait has passed since the first add, so all adds of an item in between are coalesced and the item
+     * is taken once. Items taken by workers are not affected.
+     */
+    public WorkQueue<T> debounced(Duration window, Duration maxWait) {
+        if (window.isZero() || window.isNegative()) {
+            return this;
+        }
+
+        return new WorkQueue<T>() {
+            @Override
+            public void add(T item) {
+                track(item);
+                delegate.addDebounced(item, window, maxWait);
+            }
+
+            @Override
+            public int length() {
+                return TrackingWorkQueue.this.length();
+            }
+
+            @Override
+            public T get() throws InterruptedException {
+                return TrackingWorkQueue.this.get();
+            }
+
+            @Override
+            public void done(T item) {
+                TrackingWorkQueue.this.done(item);
+            }
+
+            @Override
+            public void shutDown() {
+                TrackingWorkQueue.this.shutDown();
+            }
+
+            @Override
+            public boolean isShuttingDown() {
+                return TrackingWorkQueue.this.isShuttingDown();
+            }
+        };
+    }
+
+    /**
+     * @return number of adds of items that were already waiting.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of items added or delayed that no worker has taken yet.
+     */
+    public int getWaiting() {
+        return queuedSince.size();
+    }
+
+    private void track(T item) {
+        if (queuedSince.putIfAbsent(item, System.nanoTime()) != null) {
+            coalesced.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param nanos a {@link System#nanoTime()}.
+     * @return true if all items added at or before the time have been taken and are done, items added later
+     * might still be waiting.
+     */
+    public boolean isDrainedUpTo(long nanos) {
+        return queuedSince.values().stream().allMatch(since -> since - nanos > 0)
+                && processingSince.values().stream().allMatch(since -> since - nanos > 0);
+    }
+
+    /**
+     * @return how long the oldest item has been waiting, zero if no item is waiting.
+     */
+    public Duration getOldestAge() {
+        long now = System.nanoTime();
+        long oldest = now;
+        for (Long since : queuedSince.values()) {
+            oldest = Math.min(oldest, since);
+        }
+        return Duration.ofNanos(now - oldest);
+    }
+}
@@ -0,0 +1,264 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.plugins.credentials.common.IdCredentials;
+import hudson.ExtensionListListener;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import io.alauda.jenkins.plugins.credentials.metadata.MetadataProvider;
+import io.alauda.jenkins.plugins.credentials.rule.KubernetesSecretRule;
+import io.kubernetes.client.openapi.models.V1Secret;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rules, converters and metadata providers compiled once, so converting a secret doesn't look up extensions.
+ * The pipeline is compiled again when any of those extension lists changes.
+ * <p>
+ * Secrets are routed to converters by the value of their {@value SecretUtils#JENKINS_IO_CREDENTIALS_TYPE_LABEL}
+ * label, secrets without the label or with a value no converter handles are routed by their types.
+ */
+public final class ConversionPipeline {
+
+    private static final AtomicBoolean listening = new AtomicBoolean();
+    // Bumped whenever the extensions change, a pipeline compiled before that is never published
+    private static final AtomicInteger version = new AtomicInteger();
+    private static volatile ConversionPipeline current;
+    // Conversions per route, kept across compilations
+    private static final ConcurrentHashMap<String, AtomicLong> conversions = new ConcurrentHashMap<>();
+
+    private final KubernetesSecretRule[] rules;
+    private final SecretToCredentialConverter[] converters;
+    private final MetadataProvider[] metadataProviders;
+    // Routes keyed by the value of the credentials type label, the first converter that handles the value wins
+    private final Map<String, Route> labelRoutes = new HashMap<>();
+    // Routes keyed by secret type, types not declared by converters are added the first time they are seen
+    private final ConcurrentHashMap<String, Optional<Route>> typeRoutes = new ConcurrentHashMap<>();
+
+    ConversionPipeline(KubernetesSecretRule[] rules, SecretToCredentialConverter[] converters,
+                               MetadataProvider[] metadataProviders) {
+        this.rules = rules;
+        this.converters = converters;
+        this.metadataProviders = metadataProviders;
+
+        for (SecretToCredentialConverter converter : converters) {
+            for (String credentialsType : converter.getCredentialsTypes()) {
+                labelRoutes.putIfAbsent(credentialsType, new Route("label:" + credentialsType, converter));
+            }
+
+            Collection<String> types = converter.getSecretTypes();
+            if (types != null) {
+                types.forEach(this::routeByType);
+            }
+        }
+    }
+
+    /**
+     * @return the compiled pipeline of the current extensions.
+     */
+    public static ConversionPipeline get() {
+        ConversionPipeline pipeline = current;
+        if (pipeline == null) {
+            if (listening.compareAndSet(false, true)) {
+                ExtensionListListener invalidate = new ExtensionListListener() {
+                    @Override
+                    public void onChange() {
+                        synchronized (ConversionPipeline.class) {
+                            version.incrementAndGet();
+                            current = null;
+                        }
+                    }
+                };
+                KubernetesSecretRule.all().addListener(invalidate);
+                SecretToCredentialConverter.all().addListener(invalidate);
+                MetadataProvider.all().addListener(invalidate);
+            }
+
+            int compiledVersion = version.get();
+            pipeline = compile();
+            synchronized (ConversionPipeline.class) {
+                if (compiledVersion == version.get()) {
+                    current = pipeline;
+                }
+            }
+        }
+        return pipeline;
+    }
+
+    private static ConversionPipeline compile() {
+        return new ConversionPipeline(
+                KubernetesSecretRule.all().toArray(new KubernetesSecretRule[0]),
+                SecretToCredentialConverter.all().toArray(new SecretToCredentialConverter[0]),
+                MetadataProvider.all().toArray(new MetadataProvider[0]));
+    }
+
+    /**
+     * @return true if any rule excludes the secret.
+     */
+    public boolean shouldExclude(V1Secret secret) {
+        for (KubernetesSecretRule rule : rules) {
+            if (rule.exclude(secret)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link SecretToCredentialConverter#lookup(String)}, the first converter that can convert the type wins.
+     * @return the converter of the type, or null if no converter can convert it.
+     */
+    public SecretToCredentialConverter lookup(String type) {
+        Route route = routeByType(type);
+        return route == null ? null : route.converter;
+    }
+
+    /**
+     * @return the route of the secret, or null if no converter can convert it.
+     */
+    public Route route(V1Secret secret) {
+        Map<String, String> labels = secret.getMetadata() == null ? null : secret.getMetadata().getLabels();
+        if (labels != null) {
+            String credentialsType = labels.get(SecretUtils.JENKINS_IO_CREDENTIALS_TYPE_LABEL);
+            if (credentialsType != null) {
+                Route route = labelRoutes.get(credentialsType);
+                if (route != null) {
+                    return route;
+                }
+            }
+        }
+        return routeByType(secret.getType());
+    }
+
+    /**
+     * @return values of the credentials type label handled by converters.
+     */
+    public Set<String> getCredentialsTypes() {
+        return Collections.unmodifiableSet(labelRoutes.keySet());
+    }
+
+    /**
+     * Convert the secret unless it is excluded by rules.
+     * @return the credentials, or null if the secret is excluded or there is no converter for it.
+     * @throws CredentialsConversionException if the secret could not be converted.
+     */
+    public IdCredentials convert(V1Secret secret) throws CredentialsConversionException {
+        if (shouldExclude(secret)) {
+            return null;
+        }
+
+        Route route = route(secret);
+        if (route == null) {
+            return null;
+        }
+
+        return convert(secret, route, SecretData.of(secret));
+    }
+
+    /**
+     * Convert the secret unless it is excluded by rules, then attach its metadata.
+     * @return the credentials with metadata, or null if the secret is excluded or there is no converter for it.
+     * @throws CredentialsConversionException if the secret could not be converted.
+     */
+    public CredentialsWithMetadata convertWithMetadata(V1Secret secret) throws CredentialsConversionException {
+        if (shouldExclude(secret)) {
+            return null;
+        }
+
+        Route route = route(secret);
+        if (route == null) {
+            return null;
+        }
+
+        SecretData data = SecretData.of(secret);
+        IdCredentials credentials = convert(secret, route, data);
+        if (credentials == null) {
+            return null;
+        }
+        CredentialsWithMetadata credentialsWithMetadata = attachMetadata(secret, credentials);
+        credentialsWithMetadata.setSecretCacheKeys(data.getCacheKeys());
+        return credentialsWithMetadata;
+    }
+
+    private IdCredentials convert(V1Secret secret, Route route, SecretData data) throws CredentialsConversionException {
+        IdCredentials credentials = route.converter.convert(secret, data);
+        if (credentials != null) {
+            route.conversions.incrementAndGet();
+        }
+        return credentials;
+    }
+
+    /**
+     * @return number of secrets converted per route, keyed by route name, e.g. {@code label:usernamePassword}
+     * or {@code type:Opaque}.
+     */
+    public static Map<String, Long> getConversions() {
+        Map<String, Long> result = new TreeMap<>();
+        conversions.forEach((name, count) -> result.put(name, count.get()));
+        return result;
+    }
+
+    /**
+     * Attach metadata of the secret to its credentials by all metadata providers.
+     */
+    public CredentialsWithMetadata attachMetadata(V1Secret secret, IdCredentials credentials) {
+        CredentialsWithMetadata credentialsWithMetadata = new CredentialsWithMetadata<>(credentials);
+        for (MetadataProvider metadataProvider : metadataProviders) {
+            metadataProvider.attach(secret, credentialsWithMetadata);
+        }
+        return credentialsWithMetadata;
+    }
+
+    private Route routeByType(String type) {
+        if (type == null) {
+            SecretToCredentialConverter converter = scan(null);
+            return converter == null ? null : new Route("type:", converter);
+        }
+        return typeRoutes.computeIfAbsent(type, t -> {
+            SecretToCredentialConverter converter = scan(t);
+            return converter == null ? Optional.empty() : Optional.of(new Route("type:" + t, converter));
+        }).orElse(null);
+    }
+
+    private SecretToCredentialConverter scan(String type) {
+        for (SecretToCredentialConverter converter : converters) {
+            if (converter.canConvert(type)) {
+                return converter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A converter that secrets are routed to, either by label value or by type.
+     */
+    public static final class Route {
+        private final String name;
+        private final SecretToCredentialConverter converter;
+        private final AtomicLong conversions;
+
+        private Route(String name, SecretToCredentialConverter converter) {
+            this.name = name;
+            this.converter = converter;
+            this.conversions = ConversionPipeline.conversions.computeIfAbsent(name, n -> new AtomicLong());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SecretToCredentialConverter getConverter() {
+            return converter;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * SecretToCredentialConvertor that converts a dockerconfigjson secret to a {@link FileCredentialsImpl}
+ * named {@code config.json}, so it can be used as the Docker config file.
+ */
+@Extension
+public class DockerConfigJsonCredentialsConverter extends SecretToCredentialConverter {
+    private static final String DOCKER_CONFIG_JSON_TYPE = "kubernetes.io/dockerconfigjson";
+    private static final String DOCKER_CONFIG_JSON_CREDENTIALS_TYPE = "dockerConfigJson";
+    private static final String FILE_NAME = "config.json";
+
+    @Override
+    public boolean canConvert(String type) {
+        return DOCKER_CONFIG_JSON_TYPE.equals(type);
+    }
+
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(DOCKER_CONFIG_JSON_TYPE);
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(DOCKER_CONFIG_JSON_CREDENTIALS_TYPE);
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret) throws CredentialsConversionException {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/dockerconfigjson definition contains no data");
+
+        return new FileCredentialsImpl(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(secret),
+                SecretUtils.getCredentialDescription(secret), FILE_NAME,
+                data.getNonNullSecretBytes(".dockerconfigjson", "kubernetes.io/dockerconfigjson credential is missing the .dockerconfigjson", SecretData.MAX_FILE_BYTES));
+    }
+
+}
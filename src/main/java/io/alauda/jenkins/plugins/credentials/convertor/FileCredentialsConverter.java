@@ -0,0 +1,51 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * SecretToCredentialConvertor that converts {@link FileCredentialsImpl}. Secrets are only routed to it by the
+ * {@value SecretUtils#JENKINS_IO_CREDENTIALS_TYPE_LABEL} label, as Opaque secrets are converted to secret text.
+ */
+@Extension
+public class FileCredentialsConverter extends SecretToCredentialConverter {
+    private static final String SECRET_FILE_CREDENTIALS_TYPE = "secretFile";
+
+    @Override
+    public boolean canConvert(String type) {
+        return false;
+    }
+
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(SECRET_FILE_CREDENTIALS_TYPE);
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret) throws CredentialsConversionException {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        SecretUtils.requireNonNull(secret.getData(), "secretFile definition contains no data");
+
+        String fileName = data.getNonNullString("filename", "secretFile credential is missing the filename");
+        return new FileCredentialsImpl(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(secret),
+                SecretUtils.getCredentialDescription(secret), fileName,
+                data.getNonNullSecretBytes("data", "secretFile credential is missing the data", SecretData.MAX_FILE_BYTES));
+    }
+
+}
@@ -2,33 +2,49 @@ package io.alauda.jenkins.plugins.credentials.convertor;
 
 import com.cloudbees.plugins.credentials.common.IdCredentials;
 import hudson.Extension;
+import hudson.util.Secret;
 import io.alauda.jenkins.plugins.credentials.CredentialsUtils;
-import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.alauda.jenkins.plugins.credentials.SecretData;
 import io.kubernetes.client.openapi.models.V1Secret;
 
-import java.util.Map;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 
 @Extension
 public class OpaqueCredentialsConverter extends SecretToCredentialConverter {
     private static final String OPAQUE_TYPE = "Opaque";
+    private static final String SECRET_TEXT_CREDENTIALS_TYPE = "secretText";
 
     @Override
     public boolean canConvert(String type) {
         return OPAQUE_TYPE.equals(type);
     }
 
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(OPAQUE_TYPE);
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(SECRET_TEXT_CREDENTIALS_TYPE);
+    }
+
     @Override
     public IdCredentials convert(V1Secret secret) throws CredentialsConversionException {
-        Map<String, byte[]> data = secret.getData();
-        if(data == null) {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public IdCredentials convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        if(data.isEmpty()) {
             return null;
         }
 
-        Optional<String> tokenOpt = SecretUtils.getOptionalSecretData(secret, "token", "");
+        Optional<Secret> tokenOpt = data.getOptionalSecret("token", "");
         if(tokenOpt.isPresent()) {
-            String token = tokenOpt.get();
-            return CredentialsUtils.convertToStringCredentials(secret.getMetadata(), token);
+            return CredentialsUtils.convertToStringCredentials(secret.getMetadata(), tokenOpt.get());
         }
 
         return null;
@@ -0,0 +1,60 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.jenkins.plugins.sshcredentials.impl.BasicSSHUserPrivateKey;
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.kubernetes.client.openapi.models.V1Secret;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * SecretToCredentialConvertor that converts {@link BasicSSHUserPrivateKey}.
+ */
+@Extension
+public class SSHAuthCredentialsConverter extends SecretToCredentialConverter {
+    private static final String SSH_AUTH_TYPE = "kubernetes.io/ssh-auth";
+    private static final String SSH_USER_PRIVATE_KEY_CREDENTIALS_TYPE = "sshUserPrivateKey";
+
+    @Override
+    public boolean canConvert(String type) {
+        return SSH_AUTH_TYPE.equals(type);
+    }
+
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(SSH_AUTH_TYPE);
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(SSH_USER_PRIVATE_KEY_CREDENTIALS_TYPE);
+    }
+
+    @Override
+    public BasicSSHUserPrivateKey convert(V1Secret secret) throws CredentialsConversionException {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public BasicSSHUserPrivateKey convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/ssh-auth definition contains no data");
+
+        ByteBuffer privateKeyBytes = data.getNonNullBytes("ssh-privatekey", "kubernetes.io/ssh-auth credential is missing the ssh-privatekey");
+        if (privateKeyBytes.remaining() > SecretData.MAX_FILE_BYTES) {
+            throw new CredentialsConversionException("kubernetes.io/ssh-auth credential has a ssh-privatekey larger than " + SecretData.MAX_FILE_BYTES + " bytes");
+        }
+        // the private key source only takes the key as a String, it is encrypted right away
+        String privateKey = data.getNonNullString("ssh-privatekey", "kubernetes.io/ssh-auth credential is missing the ssh-privatekey");
+        String username = data.contains("username") ? data.getNonNullString("username", "") : "";
+        String passphrase = data.contains("passphrase") ? data.getNonNullString("passphrase", "") : null;
+
+        return new BasicSSHUserPrivateKey(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(secret), username,
+                new BasicSSHUserPrivateKey.DirectEntryPrivateKeySource(privateKey), passphrase,
+                SecretUtils.getCredentialDescription(secret));
+    }
+
+}
@@ -26,8 +26,13 @@ package io.alauda.jenkins.plugins.credentials.convertor;
 import com.cloudbees.plugins.credentials.common.IdCredentials;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
 import io.kubernetes.client.openapi.models.V1Secret;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * Class that converts a secret of a given type to an {@link IdCredentials}.
  */
@@ -49,6 +54,39 @@ public abstract class SecretToCredentialConverter implements ExtensionPoint {
      */
     public abstract IdCredentials convert(V1Secret secret) throws CredentialsConversionException;
 
+    /**
+     * Convert the given {@code Secret} to an {@code IdCredential} from a byte-oriented view of its data, whose
+     * key bindings are already resolved. Converters should override this to avoid intermediate Strings of
+     * sensitive data, the default implementation falls back to {@link #convert(V1Secret)}.
+     * @param secret the Secret to convert.
+     * @param data the data of the Secret.
+     * @throws CredentialsConversionException if the Secret could not be converted.
+     * @return the IdCredentials created from the secret.
+     */
+    public IdCredentials convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        return convert(secret);
+    }
+
+    /**
+     * Get the types of secrets this converter can convert. Those types will be pushed down to the list/watch call
+     * as field selectors, so secrets that cannot be converted never leave the API server.
+     * @return the types of secrets, or {@code null} if they are not known in advance, then secrets of all types
+     * will be watched.
+     */
+    public Collection<String> getSecretTypes() {
+        return null;
+    }
+
+    /**
+     * Get the values of the {@value SecretUtils#JENKINS_IO_CREDENTIALS_TYPE_LABEL} label this converter handles.
+     * Secrets with such a label are routed to this converter whatever their types are, secrets without the label
+     * are routed by their types.
+     * @return the label values, or an empty collection if secrets are only routed to this converter by their types.
+     */
+    public Collection<String> getCredentialsTypes() {
+        return Collections.emptySet();
+    }
+
     /**
      * Helper to obtain all the implementations of this {@code ExtensionPoint}
      * @return the ExtensionList containing all of the implementations.
@@ -2,10 +2,15 @@ package io.alauda.jenkins.plugins.credentials.convertor;
 
 import com.cloudbees.plugins.credentials.common.IdCredentials;
 import hudson.Extension;
+import hudson.util.Secret;
 import io.alauda.jenkins.plugins.credentials.CredentialsUtils;
+import io.alauda.jenkins.plugins.credentials.SecretData;
 import io.alauda.jenkins.plugins.credentials.SecretUtils;
 import io.kubernetes.client.openapi.models.V1Secret;
 
+import java.util.Collection;
+import java.util.Collections;
+
 @Extension
 public class ServiceAccountTokenCredentialsConverter extends SecretToCredentialConverter {
     private static final String SERVICE_ACCOUNT_TOKEN_TYPE = "kubernetes.io/service-account-token";
@@ -16,10 +21,21 @@ public class ServiceAccountTokenCredentialsConverter extends SecretToCredentialC
         return SERVICE_ACCOUNT_TOKEN_TYPE.equals(type);
     }
 
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(SERVICE_ACCOUNT_TOKEN_TYPE);
+    }
+
     @Override
     public IdCredentials convert(V1Secret secret) throws CredentialsConversionException {
         SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/service-account-token definition contains no data");
-        String token = SecretUtils.getNonNullSecretData(secret, "token", "kubernetes.io/service-account-token credential is missing the token");
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public IdCredentials convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/service-account-token definition contains no data");
+        Secret token = data.getNonNullSecret("token", "kubernetes.io/service-account-token credential is missing the token");
 
         return CredentialsUtils.convertToStringCredentials(secret.getMetadata(), token);
     }
@@ -0,0 +1,62 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.SecretData;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * SecretToCredentialConvertor that converts a TLS secret to a {@link FileCredentialsImpl} of a PEM bundle,
+ * the certificate chain followed by the private key.
+ */
+@Extension
+public class TLSCredentialsConverter extends SecretToCredentialConverter {
+    private static final String TLS_TYPE = "kubernetes.io/tls";
+    private static final String TLS_CREDENTIALS_TYPE = "tlsCertificate";
+    private static final String FILE_NAME = "tls.pem";
+    private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public boolean canConvert(String type) {
+        return TLS_TYPE.equals(type);
+    }
+
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(TLS_TYPE);
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(TLS_CREDENTIALS_TYPE);
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret) throws CredentialsConversionException {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public FileCredentialsImpl convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
+        SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/tls definition contains no data");
+
+        ByteBuffer certificate = data.getNonNullBytes("tls.crt", "kubernetes.io/tls credential is missing the tls.crt");
+        ByteBuffer key = data.getNonNullBytes("tls.key", "kubernetes.io/tls credential is missing the tls.key");
+
+        // PEM blocks must start on their own line
+        boolean needsNewLine = certificate.remaining() > 0 && certificate.get(certificate.limit() - 1) != '\n';
+        return new FileCredentialsImpl(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(secret),
+                SecretUtils.getCredentialDescription(secret), FILE_NAME,
+                needsNewLine
+                        ? data.getSecretBytes(SecretData.MAX_FILE_BYTES, certificate, ByteBuffer.wrap(NEW_LINE), key)
+                        : data.getSecretBytes(SecretData.MAX_FILE_BYTES, certificate, key));
+    }
+
+}
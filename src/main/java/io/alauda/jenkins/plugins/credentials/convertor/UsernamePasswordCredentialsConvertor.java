@@ -26,26 +26,47 @@ package io.alauda.jenkins.plugins.credentials.convertor;
 import com.cloudbees.plugins.credentials.CredentialsScope;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import hudson.Extension;
+import io.alauda.jenkins.plugins.credentials.SecretData;
 import io.alauda.jenkins.plugins.credentials.SecretUtils;
 import io.kubernetes.client.openapi.models.V1Secret;
 
+import java.util.Collection;
+import java.util.Collections;
+
 /**
  * SecretToCredentialConvertor that converts {@link UsernamePasswordCredentialsImpl}.
  */
 @Extension
 public class UsernamePasswordCredentialsConvertor extends SecretToCredentialConverter {
+    private static final String BASIC_AUTH_TYPE = "kubernetes.io/basic-auth";
+    private static final String USERNAME_PASSWORD_CREDENTIALS_TYPE = "usernamePassword";
 
     @Override
     public boolean canConvert(String type) {
-        return "kubernetes.io/basic-auth".equals(type);
+        return BASIC_AUTH_TYPE.equals(type);
+    }
+
+    @Override
+    public Collection<String> getSecretTypes() {
+        return Collections.singleton(BASIC_AUTH_TYPE);
+    }
+
+    @Override
+    public Collection<String> getCredentialsTypes() {
+        return Collections.singleton(USERNAME_PASSWORD_CREDENTIALS_TYPE);
     }
 
     @Override
     public UsernamePasswordCredentialsImpl convert(V1Secret secret) throws CredentialsConversionException {
+        return convert(secret, SecretData.of(secret));
+    }
+
+    @Override
+    public UsernamePasswordCredentialsImpl convert(V1Secret secret, SecretData data) throws CredentialsConversionException {
         SecretUtils.requireNonNull(secret.getData(), "kubernetes.io/basic-auth definition contains no data");
 
-        String username = SecretUtils.getNonNullSecretData(secret, "username", "kubernetes.io/basic-auth credential is missing the username");
-        String password = SecretUtils.getNonNullSecretData(secret, "password", "kubernetes.io/basic-auth credential is missing the password");
+        String username = data.getNonNullString("username", "kubernetes.io/basic-auth credential is missing the username");
+        String password = data.getNonNullString("password", "kubernetes.io/basic-auth credential is missing the password");
 
         return new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, SecretUtils.getCredentialId(secret), SecretUtils.getCredentialDescription(secret), username, password);
 
@@ -0,0 +1,253 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import io.alauda.jenkins.plugins.credentials.SecretCache;
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Publishes immutable {@link CredentialsSnapshot}s of the credentials converted from secrets.
+ * <p>
+ * Writers queue their changes and one of them applies all pending changes as a batch to derive the next
+ * snapshot, readers get a consistent snapshot through a single volatile read without locking or copying.
+ * Writers that change many credentials in a row can stage their changes and flush them as one batch.
+ */
+public class CredentialsIndex {
+
+    private final CredentialsTypes types = new CredentialsTypes();
+    private final Queue<Map.Entry<String, CredentialsWithMetadata>> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong publishedChanges = new AtomicLong();
+
+    private volatile CredentialsSnapshot snapshot = CredentialsSnapshot.empty(types);
+
+    /**
+     * @return the latest published snapshot.
+     */
+    public CredentialsSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Put the credentials and publish a new snapshot.
+     * @param id credentials ID.
+     * @param credentialsWithMetadata credentials to put.
+     */
+    public void put(String id, CredentialsWithMetadata credentialsWithMetadata) {
+        stage(id, credentialsWithMetadata);
+        publish();
+    }
+
+    /**
+     * Queue the credentials, they will be published by the next {@link #flush()} or change.
+     * @param id credentials ID.
+     * @param credentialsWithMetadata credentials to put.
+     */
+    public void stage(String id, CredentialsWithMetadata credentialsWithMetadata) {
+        types.register(credentialsWithMetadata.getCredentials().getClass());
+        pendingChanges.add(new AbstractMap.SimpleImmutableEntry<>(id, credentialsWithMetadata));
+    }
+
+    /**
+     * Queue the removal of the credentials, it will be published by the next {@link #flush()} or change.
+     * @param id credentials ID.
+     * @return true if the credentials exist in the latest snapshot.
+     */
+    public boolean stageRemoval(String id) {
+        boolean exists = snapshot.containsKey(id);
+        pendingChanges.add(new AbstractMap.SimpleImmutableEntry<>(id, null));
+        return exists;
+    }
+
+    /**
+     * Publish all staged changes in one snapshot.
+     */
+    public void flush() {
+        publish();
+    }
+
+    /**
+     * Put all the credentials and publish them in one snapshot.
+     * @param credentialsById credentials keyed by credentials ID.
+     */
+    public void putAll(Map<String, CredentialsWithMetadata> credentialsById) {
+        if (credentialsById.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, CredentialsWithMetadata>> batch = new ArrayList<>(credentialsById.size());
+        credentialsById.forEach((id, credentialsWithMetadata) -> {
+            types.register(credentialsWithMetadata.getCredentials().getClass());
+            batch.add(new AbstractMap.SimpleImmutableEntry<>(id, credentialsWithMetadata));
+        });
+
+        publishLock.lock();
+        try {
+            // apply pending changes first, they might be older than the batch
+            publish();
+            apply(batch);
+        } finally {
+            publishLock.unlock();
+        }
+        publish();
+    }
+
+    /**
+     * Put all the credentials and remove the credentials that are not retained, then publish them in one snapshot.
+     * @param credentialsById credentials keyed by credentials ID, they are always retained.
+     * @param retain tells whether credentials of the ID should be retained.
+     * @return number of removed credentials.
+     */
+    public int replace(Map<String, CredentialsWithMetadata> credentialsById, Predicate<String> retain) {
+        credentialsById.values().forEach(credentialsWithMetadata ->
+                types.register(credentialsWithMetadata.getCredentials().getClass()));
+
+        publishLock.lock();
+        try {
+            // apply pending changes first, they might be older than the batch
+            publish();
+
+            List<Map.Entry<String, CredentialsWithMetadata>> batch = new ArrayList<>(credentialsById.size());
+            int removed = 0;
+            for (CredentialsWithMetadata existing : snapshot.all()) {
+                String id = existing.getCredentials().getId();
+                if (!credentialsById.containsKey(id) && !retain.test(id)) {
+                    batch.add(new AbstractMap.SimpleImmutableEntry<>(id, null));
+                    removed++;
+                }
+            }
+            credentialsById.forEach((id, credentialsWithMetadata) ->
+                    batch.add(new AbstractMap.SimpleImmutableEntry<>(id, credentialsWithMetadata)));
+
+            if (!batch.isEmpty()) {
+                apply(batch);
+            }
+            return removed;
+        } finally {
+            publishLock.unlock();
+            publish();
+        }
+    }
+
+    /**
+     * Remove the credentials and publish a new snapshot.
+     * @param id credentials ID.
+     * @return true if the credentials exist in the latest snapshot.
+     */
+    public boolean remove(String id) {
+        boolean exists = stageRemoval(id);
+        publish();
+        return exists;
+    }
+
+    /**
+     * @return number of snapshots published by changes.
+     */
+    public long getPublishedBatches() {
+        return publishedBatches.get();
+    }
+
+    /**
+     * @return number of changes published, divided by the number of batches it is the average batch size.
+     */
+    public long getPublishedChanges() {
+        return publishedChanges.get();
+    }
+
+    /**
+     * Update the global namespaces, the global partition will be rebuilt if they changed.
+     * @param namespaces namespaces whose secrets can be used globally.
+     */
+    public void setGlobalNamespaces(Collection<String> namespaces) {
+        Set<String> globalNamespaces = new HashSet<>(namespaces);
+        if (snapshot.getGlobalNamespaces().equals(globalNamespaces)) {
+            return;
+        }
+
+        publishLock.lock();
+        try {
+            snapshot = snapshot.withGlobalNamespaces(globalNamespaces);
+        } finally {
+            publishLock.unlock();
+        }
+        // writers that couldn't take the lock meanwhile left their changes to us
+        publish();
+    }
+
+    /**
+     * Apply all pending changes to a new snapshot. If another thread is publishing, it will pick up
+     * our changes after it releases the lock, so we don't need to wait for it.
+     */
+    private void publish() {
+        while (!pendingChanges.isEmpty()) {
+            if (!publishLock.tryLock()) {
+                return;
+            }
+
+            try {
+                List<Map.Entry<String, CredentialsWithMetadata>> batch = new ArrayList<>();
+                Map.Entry<String, CredentialsWithMetadata> change;
+                while ((change = pendingChanges.poll()) != null) {
+                    batch.add(change);
+                }
+
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+            } finally {
+                publishLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Derive the next snapshot from the batch, must hold the publish lock.
+     */
+    private void apply(List<Map.Entry<String, CredentialsWithMetadata>> batch) {
+        CredentialsSnapshot previous = snapshot;
+        snapshot = previous.apply(batch);
+        if (snapshot != previous) {
+            updateSecretCacheReferences(previous, batch);
+        }
+        publishedBatches.incrementAndGet();
+        publishedChanges.addAndGet(batch.size());
+    }
+
+    /**
+     * Credentials put in the index retain the shared secrets they were converted with, and release them once they
+     * are replaced or removed, so shared secrets are evicted with the last credentials referencing them.
+     */
+    private static void updateSecretCacheReferences(CredentialsSnapshot previous, List<Map.Entry<String, CredentialsWithMetadata>> batch) {
+        // latest value of the IDs changed by the batch so far, a batch might change the same ID more than once
+        Map<String, CredentialsWithMetadata> changed = new HashMap<>();
+        for (Map.Entry<String, CredentialsWithMetadata> change : batch) {
+            String id = change.getKey();
+            CredentialsWithMetadata value = change.getValue();
+            CredentialsWithMetadata old = changed.containsKey(id) ? changed.get(id) : previous.get(id);
+            if (old == value) {
+                continue;
+            }
+            changed.put(id, value);
+            // retain first, the new credentials might share the secrets of the old ones
+            if (value != null) {
+                SecretCache.retain(value.getSecretCacheKeys());
+            }
+            if (old != null) {
+                SecretCache.release(old.getSecretCacheKeys());
+            }
+        }
+    }
+}
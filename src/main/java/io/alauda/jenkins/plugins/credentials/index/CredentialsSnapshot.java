@@ -0,0 +1,300 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import io.alauda.jenkins.plugins.credentials.metadata.NamespaceProvider;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the credentials converted from secrets, indexed by credentials ID, by the namespace
+ * of the secret and by the concrete class of the credentials. Credentials in the global namespaces are
+ * kept in a separate partition as well, so they can be merged into folder lookups without scanning.
+ * <p>
+ * A new snapshot is derived from the previous one for every batch of changes. All maps are {@link PersistentMap}s,
+ * so a change only copies the path to it in the maps it touches, and everything else is shared between them.
+ */
+public final class CredentialsSnapshot {
+
+    private final long generation;
+    // Credentials keyed by credentials ID
+    private final PersistentMap<String, CredentialsWithMetadata> credentials;
+    // Credentials bucketed by concrete class
+    private final Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> allBuckets;
+    // Credentials bucketed by concrete class, keyed by namespace
+    private final PersistentMap<String, Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>>> namespaceBuckets;
+    // Credentials in the global namespaces bucketed by concrete class
+    private final Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> globalBuckets;
+    private final Set<String> globalNamespaces;
+
+    private final CredentialsTypes types;
+
+    private CredentialsSnapshot(long generation,
+                                PersistentMap<String, CredentialsWithMetadata> credentials,
+                                Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> allBuckets,
+                                PersistentMap<String, Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>>> namespaceBuckets,
+                                Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> globalBuckets,
+                                Set<String> globalNamespaces,
+                                CredentialsTypes types) {
+        this.generation = generation;
+        this.credentials = credentials;
+        this.allBuckets = allBuckets;
+        this.namespaceBuckets = namespaceBuckets;
+        this.globalBuckets = globalBuckets;
+        this.globalNamespaces = globalNamespaces;
+        this.types = types;
+    }
+
+    static CredentialsSnapshot empty(CredentialsTypes types) {
+        return new CredentialsSnapshot(0, PersistentMap.empty(), Collections.emptyMap(), PersistentMap.empty(),
+                Collections.emptyMap(), Collections.emptySet(), types);
+    }
+
+    /**
+     * @return the generation of the snapshot, it increases every time the credentials change.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int size() {
+        return credentials.size();
+    }
+
+    public boolean containsKey(String id) {
+        return credentials.containsKey(id);
+    }
+
+    public CredentialsWithMetadata get(String id) {
+        return credentials.get(id);
+    }
+
+    public Set<String> getGlobalNamespaces() {
+        return globalNamespaces;
+    }
+
+    /**
+     * @return all credentials in the snapshot.
+     */
+    public Collection<CredentialsWithMetadata> all() {
+        return Collections.unmodifiableCollection(credentials.values());
+    }
+
+    /**
+     * @param type requested credentials type.
+     * @return all credentials that are assignable to the type.
+     */
+    public List<CredentialsWithMetadata> all(Class<?> type) {
+        List<CredentialsWithMetadata> result = new ArrayList<>();
+        collect(allBuckets, types.resolve(type), result);
+        return result;
+    }
+
+    /**
+     * @param type requested credentials type.
+     * @return credentials in the global namespaces that are assignable to the type.
+     */
+    public List<CredentialsWithMetadata> global(Class<?> type) {
+        List<CredentialsWithMetadata> result = new ArrayList<>();
+        collect(globalBuckets, types.resolve(type), result);
+        return result;
+    }
+
+    /**
+     * Merge the global partition into the credentials by credentials ID, credentials already in the map take
+     * precedence. Only the global credentials are visited.
+     * @param type requested credentials type.
+     * @param credentialsById credentials keyed by credentials ID, global credentials are added after them.
+     */
+    public void mergeGlobal(Class<?> type, Map<String, CredentialsWithMetadata> credentialsById) {
+        for (CredentialsWithMetadata credentialsWithMetadata : global(type)) {
+            credentialsById.putIfAbsent(credentialsWithMetadata.getCredentials().getId(), credentialsWithMetadata);
+        }
+    }
+
+    /**
+     * @param namespaces namespaces of the secrets, should not contain duplicates.
+     * @param type requested credentials type.
+     * @return credentials converted from secrets in those namespaces that are assignable to the type.
+     */
+    public List<CredentialsWithMetadata> inNamespaces(Collection<String> namespaces, Class<?> type) {
+        Set<Class<?>> concreteClasses = types.resolve(type);
+
+        List<CredentialsWithMetadata> result = new ArrayList<>();
+        for (String namespace : namespaces) {
+            Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets = namespaceBuckets.get(namespace);
+            if (buckets != null) {
+                collect(buckets, concreteClasses, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Derive a new snapshot by applying the changes in order.
+     * @param changes credentials to put, or to remove if the value is null, keyed by credentials ID.
+     * @return the new snapshot, or this snapshot if nothing changed.
+     */
+    CredentialsSnapshot apply(List<Map.Entry<String, CredentialsWithMetadata>> changes) {
+        PersistentMap<String, CredentialsWithMetadata> newCredentials = credentials;
+        BucketsBuilder newAllBuckets = new BucketsBuilder(allBuckets);
+        BucketsBuilder newGlobalBuckets = new BucketsBuilder(globalBuckets);
+        Map<String, BucketsBuilder> touchedNamespaces = new HashMap<>();
+
+        for (Map.Entry<String, CredentialsWithMetadata> change : changes) {
+            String id = change.getKey();
+            CredentialsWithMetadata value = change.getValue();
+
+            CredentialsWithMetadata old = newCredentials.get(id);
+            if (old == value) {
+                continue;
+            }
+            newCredentials = value == null ? newCredentials.minus(id) : newCredentials.plus(id, value);
+
+            if (old != null) {
+                Class<?> concreteClass = old.getCredentials().getClass();
+                newAllBuckets.remove(concreteClass, id);
+                String namespace = getNamespace(old);
+                if (namespace != null) {
+                    touch(touchedNamespaces, namespace).remove(concreteClass, id);
+                    if (globalNamespaces.contains(namespace)) {
+                        newGlobalBuckets.remove(concreteClass, id);
+                    }
+                }
+            }
+
+            if (value != null) {
+                Class<?> concreteClass = value.getCredentials().getClass();
+                newAllBuckets.put(concreteClass, id, value);
+                String namespace = getNamespace(value);
+                if (namespace != null) {
+                    touch(touchedNamespaces, namespace).put(concreteClass, id, value);
+                    if (globalNamespaces.contains(namespace)) {
+                        newGlobalBuckets.put(concreteClass, id, value);
+                    }
+                }
+            }
+        }
+
+        if (newCredentials == credentials && touchedNamespaces.isEmpty()) {
+            return this;
+        }
+
+        PersistentMap<String, Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>>> newNamespaceBuckets = namespaceBuckets;
+        for (Map.Entry<String, BucketsBuilder> touched : touchedNamespaces.entrySet()) {
+            Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets = touched.getValue().build();
+            newNamespaceBuckets = buckets.isEmpty()
+                    ? newNamespaceBuckets.minus(touched.getKey())
+                    : newNamespaceBuckets.plus(touched.getKey(), buckets);
+        }
+
+        return new CredentialsSnapshot(generation + 1,
+                newCredentials,
+                newAllBuckets.build(),
+                newNamespaceBuckets,
+                newGlobalBuckets.build(),
+                globalNamespaces,
+                types);
+    }
+
+    /**
+     * Derive a new snapshot with the global partition rebuilt for the namespaces.
+     * @param namespaces namespaces whose secrets can be used globally.
+     * @return the new snapshot, or this snapshot if the global namespaces are not changed.
+     */
+    CredentialsSnapshot withGlobalNamespaces(Set<String> namespaces) {
+        if (globalNamespaces.equals(namespaces)) {
+            return this;
+        }
+
+        Set<String> newGlobalNamespaces = Collections.unmodifiableSet(new HashSet<>(namespaces));
+        return new CredentialsSnapshot(generation + 1, credentials, allBuckets, namespaceBuckets,
+                partition(namespaceBuckets, newGlobalNamespaces), newGlobalNamespaces, types);
+    }
+
+    private static Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> partition(
+            PersistentMap<String, Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>>> namespaceBuckets,
+            Set<String> namespaces) {
+        BucketsBuilder builder = new BucketsBuilder(Collections.emptyMap());
+        for (String namespace : namespaces) {
+            Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets = namespaceBuckets.get(namespace);
+            if (buckets != null) {
+                buckets.forEach((concreteClass, bucket) -> bucket.forEach((id, c) -> builder.put(concreteClass, id, c)));
+            }
+        }
+        return builder.build();
+    }
+
+    private BucketsBuilder touch(Map<String, BucketsBuilder> touchedNamespaces, String namespace) {
+        return touchedNamespaces.computeIfAbsent(namespace, ns -> {
+            Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets = namespaceBuckets.get(ns);
+            return new BucketsBuilder(buckets == null ? Collections.emptyMap() : buckets);
+        });
+    }
+
+    private static void collect(Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets,
+                                Set<Class<?>> concreteClasses, List<CredentialsWithMetadata> result) {
+        for (Class<?> concreteClass : concreteClasses) {
+            PersistentMap<String, CredentialsWithMetadata> bucket = buckets.get(concreteClass);
+            if (bucket != null) {
+                bucket.forEach((id, credentialsWithMetadata) -> result.add(credentialsWithMetadata));
+            }
+        }
+    }
+
+    private static String getNamespace(CredentialsWithMetadata credentialsWithMetadata) {
+        return credentialsWithMetadata.getMetadata(NamespaceProvider.NAMESPACE_METADATA);
+    }
+
+    /**
+     * Builder of buckets keyed by concrete class. Only the small map of classes is copied, the buckets are
+     * persistent maps that share structure with the buckets they are derived from.
+     */
+    private static final class BucketsBuilder {
+        private final Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> base;
+        private Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets;
+
+        BucketsBuilder(Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> base) {
+            this.base = base;
+        }
+
+        void put(Class<?> concreteClass, String id, CredentialsWithMetadata credentialsWithMetadata) {
+            PersistentMap<String, CredentialsWithMetadata> bucket = bucket(concreteClass);
+            buckets().put(concreteClass, bucket.plus(id, credentialsWithMetadata));
+        }
+
+        void remove(Class<?> concreteClass, String id) {
+            PersistentMap<String, CredentialsWithMetadata> bucket = bucket(concreteClass).minus(id);
+            if (bucket.isEmpty()) {
+                buckets().remove(concreteClass);
+            } else {
+                buckets().put(concreteClass, bucket);
+            }
+        }
+
+        /**
+         * @return the built buckets, or the base if nothing changed.
+         */
+        Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> build() {
+            return buckets == null ? base : Collections.unmodifiableMap(buckets);
+        }
+
+        private PersistentMap<String, CredentialsWithMetadata> bucket(Class<?> concreteClass) {
+            PersistentMap<String, CredentialsWithMetadata> bucket = (buckets == null ? base : buckets).get(concreteClass);
+            return bucket == null ? PersistentMap.empty() : bucket;
+        }
+
+        private Map<Class<?>, PersistentMap<String, CredentialsWithMetadata>> buckets() {
+            if (buckets == null) {
+                buckets = new HashMap<>(base);
+            }
+            return buckets;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Type hierarchy of the concrete credentials classes produced by the converters, maps a requested
+ * credentials type to the concrete classes it covers.
+ */
+class CredentialsTypes {
+
+    private final Set<Class<?>> concreteClasses = new CopyOnWriteArraySet<>();
+    // Maps of requested type to the concrete classes assignable to it
+    private final ConcurrentHashMap<Class<?>, Set<Class<?>>> resolvedTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Register a concrete class, the resolved types will be updated if it is the first time we see the class.
+     * @param concreteClass class of the converted credentials.
+     */
+    void register(Class<?> concreteClass) {
+        if (concreteClasses.contains(concreteClass)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!concreteClasses.add(concreteClass)) {
+                return;
+            }
+
+            resolvedTypes.replaceAll((type, classes) -> {
+                if (!type.isAssignableFrom(concreteClass)) {
+                    return classes;
+                }
+                Set<Class<?>> updated = new HashSet<>(classes);
+                updated.add(concreteClass);
+                return Collections.unmodifiableSet(updated);
+            });
+        }
+    }
+
+    /**
+     * @param type requested credentials type.
+     * @return concrete classes that are assignable to the requested type.
+     */
+    Set<Class<?>> resolve(Class<?> type) {
+        Set<Class<?>> classes = resolvedTypes.get(type);
+        if (classes != null) {
+            return classes;
+        }
+
+        synchronized (this) {
+            return resolvedTypes.computeIfAbsent(type, t -> {
+                Set<Class<?>> assignable = new HashSet<>();
+                for (Class<?> concreteClass : concreteClasses) {
+                    if (t.isAssignableFrom(concreteClass)) {
+                        assignable.add(concreteClass);
+                    }
+                }
+                return Collections.unmodifiableSet(assignable);
+            });
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Immutable hash map that shares structure with the map it is derived from. Entries are kept in a trie of
+ * 32-way nodes indexed by 5 bits of the hash at a time, putting or removing an entry only copies the nodes on
+ * the path to it, so a write costs O(log32 N) instead of copying the whole map.
+ * <p>
+ * Keys with the same hash are kept in a collision node once all bits of the hash have been used.
+ */
+final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        Entry entry = root.find(key, hash(key), 0);
+        return entry == null ? null : (V) entry.value;
+    }
+
+    boolean containsKey(Object key) {
+        return root.find(key, hash(key), 0) != null;
+    }
+
+    /**
+     * @return a map with the key mapped to the value, or this map if the key is already mapped to the same value.
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        Change change = new Change();
+        Node updated = root.put(new Entry(key, value, hash(key)), 0, change);
+        if (updated == root) {
+            return this;
+        }
+        return new PersistentMap<>(updated, change.added ? size + 1 : size);
+    }
+
+    /**
+     * @return a map without the key, or this map if the key is absent.
+     */
+    PersistentMap<K, V> minus(Object key) {
+        Node updated = root.remove(key, hash(key), 0);
+        if (updated == root) {
+            return this;
+        }
+        return updated == null ? empty() : new PersistentMap<>(updated, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach(entry -> action.accept((K) entry.key, (V) entry.value));
+    }
+
+    /**
+     * @return a copy of the values.
+     */
+    List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Change {
+        private boolean added;
+    }
+
+    private static final class Entry {
+        private final Object key;
+        private final Object value;
+        private final int hash;
+
+        Entry(Object key, Object value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+    }
+
+    private interface Node {
+        Entry find(Object key, int hash, int shift);
+
+        Node put(Entry entry, int shift, Change change);
+
+        /**
+         * @return the node without the key, this node if the key is absent, or null if the node becomes empty.
+         */
+        Node remove(Object key, int hash, int shift);
+
+        /**
+         * @return the only entry of the node, or null if it has more entries or child nodes.
+         */
+        Entry single();
+
+        void forEach(Consumer<Entry> action);
+    }
+
+    /**
+     * Node whose slots are entries or child nodes, the bitmap tells which of the 32 slots are present.
+     */
+    private static final class BitmapNode implements Node {
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        @Override
+        public Entry find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Entry) {
+                Entry entry = (Entry) slot;
+                return entry.hash == hash && entry.key.equals(key) ? entry : null;
+            }
+            return ((Node) slot).find(key, hash, shift + BITS);
+        }
+
+        @Override
+        public Node put(Entry entry, int shift, Change change) {
+            int bit = bit(entry.hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                change.added = true;
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = entry;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Entry) {
+                Entry existing = (Entry) slot;
+                if (existing.hash == entry.hash && existing.key.equals(entry.key)) {
+                    if (existing.value == entry.value) {
+                        return this;
+                    }
+                    newSlot = entry;
+                } else {
+                    change.added = true;
+                    newSlot = merge(existing, entry, shift + BITS);
+                }
+            } else {
+                Node child = (Node) slot;
+                newSlot = child.put(entry, shift + BITS, change);
+                if (newSlot == child) {
+                    return this;
+                }
+            }
+            return with(index, newSlot);
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Entry) {
+                Entry existing = (Entry) slot;
+                if (existing.hash != hash || !existing.key.equals(key)) {
+                    return this;
+                }
+                return without(bit, index);
+            }
+
+            Node child = (Node) slot;
+            Node newChild = child.remove(key, hash, shift + BITS);
+            if (newChild == child) {
+                return this;
+            }
+            if (newChild == null) {
+                return without(bit, index);
+            }
+            // keep the trie compact, a child with only one entry is replaced by the entry
+            Entry single = newChild.single();
+            return with(index, single != null ? single : newChild);
+        }
+
+        @Override
+        public Entry single() {
+            return slots.length == 1 && slots[0] instanceof Entry ? (Entry) slots[0] : null;
+        }
+
+        @Override
+        public void forEach(Consumer<Entry> action) {
+            for (Object slot : slots) {
+                if (slot instanceof Entry) {
+                    action.accept((Entry) slot);
+                } else {
+                    ((Node) slot).forEach(action);
+                }
+            }
+        }
+
+        private Node with(int index, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        private Node without(int bit, int index) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private static Node merge(Entry first, Entry second, int shift) {
+            if (shift > MAX_SHIFT) {
+                // all bits of the hash are the same
+                return new CollisionNode(new Entry[]{first, second});
+            }
+
+            int firstBit = bit(first.hash, shift);
+            int secondBit = bit(second.hash, shift);
+            if (firstBit == secondBit) {
+                return new BitmapNode(firstBit, new Object[]{merge(first, second, shift + BITS)});
+            }
+            Object[] slots = Integer.compareUnsigned(firstBit, secondBit) < 0
+                    ? new Object[]{first, second} : new Object[]{second, first};
+            return new BitmapNode(firstBit | secondBit, slots);
+        }
+    }
+
+    /**
+     * Node of entries whose keys have the same hash.
+     */
+    private static final class CollisionNode implements Node {
+        private final Entry[] entries;
+
+        CollisionNode(Entry[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Entry find(Object key, int hash, int shift) {
+            for (Entry entry : entries) {
+                if (entry.key.equals(key)) {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Node put(Entry entry, int shift, Change change) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(entry.key)) {
+                    if (entries[i].value == entry.value) {
+                        return this;
+                    }
+                    Entry[] newEntries = entries.clone();
+                    newEntries[i] = entry;
+                    return new CollisionNode(newEntries);
+                }
+            }
+            change.added = true;
+            Entry[] newEntries = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, newEntries, 0, entries.length);
+            newEntries[entries.length] = entry;
+            return new CollisionNode(newEntries);
+        }
+
+        @Override
+        public Node remove(Object key, int hash, int shift) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(key)) {
+                    if (entries.length == 1) {
+                        return null;
+                    }
+                    Entry[] newEntries = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, newEntries, 0, i);
+                    System.arraycopy(entries, i + 1, newEntries, i, entries.length - i - 1);
+                    return new CollisionNode(newEntries);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public Entry single() {
+            return entries.length == 1 ? entries[0] : null;
+        }
+
+        @Override
+        public void forEach(Consumer<Entry> action) {
+            for (Entry entry : entries) {
+                action.accept(entry);
+            }
+        }
+    }
+}
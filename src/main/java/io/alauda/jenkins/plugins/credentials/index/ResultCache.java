@@ -0,0 +1,151 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import hudson.model.ItemGroup;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of credentials lookup results keyed by (type, ItemGroup, generation, scope version).
+ * Entries of an old generation are never hit again, they will be evicted as new entries come in.
+ * The scope version is bumped by {@link #invalidate()} whenever the state scopes depend on might have changed,
+ * e.g. an ItemGroup is updated, moved or deleted, so results computed before are never served again.
+ */
+public class ResultCache {
+
+    private final int maxSize;
+    private final Map<Key, List<?>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong scopeVersion = new AtomicLong();
+
+    public ResultCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, List<?>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<?>> eldest) {
+                if (size() > ResultCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the cached result of the lookup, or load and cache it if absent.
+     * @param type requested credentials type.
+     * @param itemGroup ItemGroup the lookup happens in.
+     * @param withinScope whether only the credentials within the scopes of the ItemGroup are looked up.
+     * @param generation generation of the credentials the result is built from.
+     * @param loader loads the result if it is not cached.
+     * @return an immutable list of the credentials.
+     */
+    @SuppressWarnings("unchecked")
+    public <C> List<C> get(Class<C> type, ItemGroup itemGroup, boolean withinScope, long generation, Supplier<List<C>> loader) {
+        if (maxSize <= 0) {
+            misses.incrementAndGet();
+            return Collections.unmodifiableList(loader.get());
+        }
+
+        // read before loading, a result loaded while the scopes change is cached under the stale version
+        Key key = new Key(type, itemGroup == null ? null : itemGroup.getFullName(), withinScope, generation, scopeVersion.get());
+        synchronized (entries) {
+            List<?> cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return (List<C>) cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        List<C> result = Collections.unmodifiableList(loader.get());
+        synchronized (entries) {
+            entries.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drop all cached results, results being loaded at the same time won't be served either.
+     */
+    public void invalidate() {
+        scopeVersion.incrementAndGet();
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    private static final class Key {
+        private final Class<?> type;
+        private final String itemGroup;
+        private final boolean withinScope;
+        private final long generation;
+        private final long scopeVersion;
+
+        private Key(Class<?> type, String itemGroup, boolean withinScope, long generation, long scopeVersion) {
+            this.type = type;
+            this.itemGroup = itemGroup;
+            this.withinScope = withinScope;
+            this.generation = generation;
+            this.scopeVersion = scopeVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return withinScope == key.withinScope
+                    && generation == key.generation
+                    && scopeVersion == key.scopeVersion
+                    && type.equals(key.type)
+                    && Objects.equals(itemGroup, key.itemGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, itemGroup, withinScope, generation, scopeVersion);
+        }
+    }
+}
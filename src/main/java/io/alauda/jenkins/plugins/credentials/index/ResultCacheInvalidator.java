@@ -0,0 +1,44 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.listeners.ItemListener;
+import io.alauda.jenkins.plugins.credentials.KubernetesCredentialsProvider;
+
+/**
+ * Scopes decide which credentials show in an ItemGroup from the state of the ItemGroup, e.g. its location,
+ * properties or annotations, which doesn't bump the generation of credentials. Cached lookup results are dropped
+ * whenever an ItemGroup is updated, moved or deleted.
+ */
+@Extension
+public class ResultCacheInvalidator extends ItemListener {
+
+    @Override
+    public void onUpdated(Item item) {
+        invalidate(item);
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        invalidate(item);
+    }
+
+    @Override
+    public void onDeleted(Item item) {
+        invalidate(item);
+    }
+
+    private void invalidate(Item item) {
+        // results are cached by ItemGroup, other items don't have entries of their own
+        if (!(item instanceof ItemGroup)) {
+            return;
+        }
+
+        ExtensionList<KubernetesCredentialsProvider> providers = ExtensionList.lookup(KubernetesCredentialsProvider.class);
+        if (!providers.isEmpty()) {
+            providers.get(0).getResultCache().invalidate();
+        }
+    }
+}
@@ -2,13 +2,17 @@ package io.alauda.jenkins.plugins.credentials.metadata;
 
 import com.cloudbees.plugins.credentials.common.IdCredentials;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CredentialsWithMetadata<C extends IdCredentials> {
 
     private C credentials;
     private Map<String, String> metadata = new HashMap<>();
+    // Keys of the SecretCache entries the credentials share, not persisted as restored credentials don't share them
+    private transient List<String> secretCacheKeys;
 
     public CredentialsWithMetadata(C credentials) {
         this.credentials = credentials;
@@ -29,4 +33,27 @@ public class CredentialsWithMetadata<C extends IdCredentials> {
     public String getMetadata(String key) {
         return metadata.get(key);
     }
+
+    /**
+     * @return keys of the SecretCache entries the credentials were converted with.
+     */
+    public List<String> getSecretCacheKeys() {
+        return secretCacheKeys == null ? Collections.emptyList() : secretCacheKeys;
+    }
+
+    public void setSecretCacheKeys(List<String> secretCacheKeys) {
+        this.secretCacheKeys = secretCacheKeys;
+    }
+
+    /**
+     * @return a copy of the credentials with the metadata added or replaced, this one is not modified as it might
+     * be shared by published snapshots.
+     */
+    public CredentialsWithMetadata<C> withMetadata(String key, String value) {
+        CredentialsWithMetadata<C> copy = new CredentialsWithMetadata<>(credentials);
+        copy.metadata.putAll(metadata);
+        copy.metadata.put(key, value);
+        copy.secretCacheKeys = secretCacheKeys;
+        return copy;
+    }
 }
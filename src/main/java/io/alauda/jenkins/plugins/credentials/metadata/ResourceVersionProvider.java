@@ -0,0 +1,15 @@
+package io.alauda.jenkins.plugins.credentials.metadata;
+
+import hudson.Extension;
+import io.kubernetes.client.openapi.models.V1Secret;
+
+@Extension
+public class ResourceVersionProvider implements MetadataProvider {
+
+    public static final String RESOURCE_VERSION_METADATA = "resourceVersion";
+
+    @Override
+    public void attach(V1Secret secret, CredentialsWithMetadata credentialsWithMetadata) {
+        credentialsWithMetadata.addMetadata(RESOURCE_VERSION_METADATA, secret.getMetadata().getResourceVersion());
+    }
+}
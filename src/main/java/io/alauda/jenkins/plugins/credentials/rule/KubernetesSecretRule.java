@@ -16,6 +16,24 @@ public interface KubernetesSecretRule extends ExtensionPoint {
      */
     boolean exclude(V1Secret secret);
 
+    /**
+     * Label selector fragment that matches all secrets not excluded by this rule. It will be pushed down to the
+     * list/watch call, so secrets that don't match it never leave the API server.
+     * @return label selector fragment, or null if the rule cannot be expressed by a label selector.
+     */
+    default String getLabelSelector() {
+        return null;
+    }
+
+    /**
+     * Field selector fragment that matches all secrets not excluded by this rule. It will be pushed down to the
+     * list/watch call, so secrets that don't match it never leave the API server.
+     * @return field selector fragment, or null if the rule cannot be expressed by a field selector.
+     */
+    default String getFieldSelector() {
+        return null;
+    }
+
     static ExtensionList<KubernetesSecretRule> all() {
         return ExtensionList.lookup(KubernetesSecretRule.class);
     }
@@ -2,16 +2,24 @@ package io.alauda.jenkins.plugins.credentials.scope;
 
 import hudson.Extension;
 import hudson.model.ItemGroup;
+import io.alauda.jenkins.plugins.credentials.CompiledConfiguration;
+import io.alauda.jenkins.plugins.credentials.CompiledConfigurationListener;
 import io.alauda.jenkins.plugins.credentials.KubernetesCredentialsProviderConfiguration;
 import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
 import io.alauda.jenkins.plugins.credentials.metadata.NamespaceProvider;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
 
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 @Extension
-public class JenkinsRootScope implements KubernetesSecretScope {
+public class JenkinsRootScope implements KubernetesSecretScope, CompiledConfigurationListener {
+
+    // Pushed every time the configuration is saved
+    private volatile Set<String> globalNamespaces;
+
     @Override
     public boolean isInScope(ItemGroup owner) {
         return owner == Jenkins.getInstance();
@@ -28,11 +36,34 @@ public class JenkinsRootScope implements KubernetesSecretScope {
             return false;
         }
 
-        String globalNamespaces = KubernetesCredentialsProviderConfiguration.get().getGlobalNamespaces();
-        if (globalNamespaces == null) {
-            return false;
+        return getGlobalNamespaces().contains(namespace);
+    }
+
+    @Override
+    public Collection<String> getNamespaces(ItemGroup owner) {
+        if (!isInScope(owner)) {
+            return Collections.emptySet();
         }
 
-        return Arrays.asList(globalNamespaces.split(",")).contains(namespace);
+        return getRequiredNamespaces();
+    }
+
+    @Override
+    public Collection<String> getRequiredNamespaces() {
+        return getGlobalNamespaces();
+    }
+
+    @Override
+    public void onChanged(CompiledConfiguration previous, CompiledConfiguration current) {
+        globalNamespaces = current.getGlobalNamespaces();
+    }
+
+    private Set<String> getGlobalNamespaces() {
+        Set<String> namespaces = globalNamespaces;
+        if (namespaces == null) {
+            namespaces = KubernetesCredentialsProviderConfiguration.get().getCompiled().getGlobalNamespaces();
+            globalNamespaces = namespaces;
+        }
+        return namespaces;
     }
 }
@@ -5,6 +5,7 @@ import hudson.ExtensionPoint;
 import hudson.model.ItemGroup;
 import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -26,6 +27,26 @@ public interface KubernetesSecretScope extends ExtensionPoint {
      */
     boolean shouldShowInScope(ItemGroup owner, CredentialsWithMetadata credentialsWithMetadata);
 
+    /**
+     * Get the namespaces whose secrets might show under the ItemGroup, used to narrow down the credentials
+     * that will be checked by {@link #shouldShowInScope(ItemGroup, CredentialsWithMetadata)}.
+     * @param owner ItemGroup will be checked.
+     * @return namespaces whose secrets might show in the ItemGroup, or null if the scope cannot tell,
+     * then all credentials will be checked.
+     */
+    default Collection<String> getNamespaces(ItemGroup owner) {
+        return null;
+    }
+
+    /**
+     * Get the namespaces whose secrets this scope might show in any ItemGroup, only those namespaces will be
+     * watched when namespaced watch is enabled.
+     * @return namespaces needed by this scope, or null if this scope needs secrets in all namespaces.
+     */
+    default Collection<String> getRequiredNamespaces() {
+        return null;
+    }
+
     static ExtensionList<KubernetesSecretScope> all() {
         return ExtensionList.lookup(KubernetesSecretScope.class);
     }
@@ -0,0 +1,175 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.informer.ListerWatcher;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1ListMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.util.CallGeneratorParams;
+import io.kubernetes.client.util.Watch;
+import io.kubernetes.client.util.Watchable;
+import okhttp3.Call;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lists and watches full secrets, but only passes {@link SecretSummary}s to the informer, so the informer cache
+ * doesn't keep the data of secrets. The full secrets are handed off to the payload sink until they are converted.
+ * <p>
+ * Secrets are listed in pages, the secrets of each page are handed off to the bulk loader as a whole before the
+ * next page is requested, so only one page of full secrets is kept in memory. This holds for the initial list and
+ * for relists, e.g. after the watched resourceVersion is gone.
+ * If a persisted {@link WatchState} is given, the initial list is served from it and the informer resumes
+ * watching from its resourceVersion, secrets are listed again only if the resourceVersion is gone.
+ */
+public class PayloadStrippingListerWatcher implements ListerWatcher<V1Secret, V1SecretList> {
+
+    private static final int HTTP_GONE = 410;
+
+    private final ApiClient apiClient;
+    private final PagedCallGenerator callGenerator;
+    private final int pageSize;
+    private final Consumer<V1Secret> payloadSink;
+    private final Consumer<List<V1Secret>> bulkLoader;
+    private volatile WatchState restoredState;
+    // Whether secrets have been listed from the API server instead of the restored state
+    private volatile boolean listed;
+
+    /**
+     * @param pageSize maximum number of secrets per list request, 0 to list all secrets in one request.
+     * @param restoredState persisted state to resume from, the initial list will be served from it instead of
+     *                      the API server. Null to list from the API server.
+     */
+    public PayloadStrippingListerWatcher(ApiClient apiClient, PagedCallGenerator callGenerator, int pageSize,
+                                         Consumer<V1Secret> payloadSink, Consumer<List<V1Secret>> bulkLoader,
+                                         WatchState restoredState) {
+        this.apiClient = apiClient;
+        this.callGenerator = callGenerator;
+        this.pageSize = pageSize;
+        this.payloadSink = payloadSink;
+        this.bulkLoader = bulkLoader;
+        this.restoredState = restoredState;
+    }
+
+    @Override
+    public V1SecretList list(CallGeneratorParams params) throws ApiException {
+        WatchState restored = restoredState;
+        if (restored != null) {
+            // the informer will watch from the restored resourceVersion, and relist if it is gone
+            restoredState = null;
+            return new V1SecretList()
+                    .metadata(new V1ListMeta().resourceVersion(restored.getResourceVersion()))
+                    .items(new ArrayList<>(restored.getSecrets()));
+        }
+
+        try {
+            return list(params.watch, params.resourceVersion, params.timeoutSeconds);
+        } catch (ApiException e) {
+            if (e.getCode() != HTTP_GONE || StringUtils.isEmpty(params.resourceVersion) || "0".equals(params.resourceVersion)) {
+                throw e;
+            }
+            // the resourceVersion is too old, list the latest secrets instead
+            return list(params.watch, null, params.timeoutSeconds);
+        }
+    }
+
+    private V1SecretList list(Boolean watch, String listResourceVersion, Integer timeoutSeconds) throws ApiException {
+        // resourceVersion 0 is served from the watch cache of the API server, which ignores the limit
+        String resourceVersion = pageSize > 0 && "0".equals(listResourceVersion) ? null : listResourceVersion;
+
+        List<V1Secret> summaries = new ArrayList<>();
+        V1SecretList page;
+        String continueToken = null;
+        do {
+            // the continue token carries the resourceVersion of the first page
+            CallGeneratorParams pageParams = new CallGeneratorParams(watch,
+                    continueToken == null ? resourceVersion : null, timeoutSeconds);
+            Call call = callGenerator.generate(pageParams, pageSize > 0 ? pageSize : null, continueToken);
+            page = apiClient.<V1SecretList>execute(call, V1SecretList.class).getData();
+            List<V1Secret> secrets = page.getItems() == null ? Collections.emptyList() : page.getItems();
+            continueToken = page.getMetadata() == null ? null : page.getMetadata().getContinue();
+
+            // summarize before loading, the loader releases the data of secrets
+            secrets.forEach(secret -> summaries.add(SecretSummary.of(secret)));
+            bulkLoader.accept(secrets);
+            page.setItems(null);
+        } while (StringUtils.isNotEmpty(continueToken));
+        listed = true;
+
+        // the informer starts watching from the resourceVersion of the last page
+        if (page.getMetadata() != null) {
+            page.getMetadata().setContinue(null);
+        }
+        page.setItems(summaries);
+        return page;
+    }
+
+    /**
+     * @return true if secrets have been listed from the API server, false while only the restored state was served.
+     */
+    public boolean hasListed() {
+        return listed;
+    }
+
+    @Override
+    public Watchable<V1Secret> watch(CallGeneratorParams params) throws ApiException {
+        Call call = callGenerator.generate(params, null, null);
+        return new StrippingWatchable(SecretWatchManager.createWatch(apiClient, call));
+    }
+
+    private V1Secret strip(V1Secret secret) {
+        if (secret.getData() != null) {
+            payloadSink.accept(secret);
+        }
+        return SecretSummary.of(secret);
+    }
+
+    /**
+     * Generates list/watch calls with the page size and continue token of the list.
+     */
+    public interface PagedCallGenerator {
+        Call generate(CallGeneratorParams params, Integer limit, String continueToken) throws ApiException;
+    }
+
+    private class StrippingWatchable implements Watchable<V1Secret> {
+        private final Watchable<V1Secret> delegate;
+
+        StrippingWatchable(Watchable<V1Secret> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public Watch.Response<V1Secret> next() {
+            Watch.Response<V1Secret> response = delegate.next();
+            if (response.object != null && !"BOOKMARK".equals(response.type)) {
+                // the data of deleted secrets will never be converted, don't hand it off
+                response.object = "DELETED".equals(response.type)
+                        ? SecretSummary.of(response.object)
+                        : strip(response.object);
+            }
+            return response;
+        }
+
+        @Override
+        public Iterator<Watch.Response<V1Secret>> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
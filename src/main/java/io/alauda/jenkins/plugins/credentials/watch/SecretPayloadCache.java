@@ -0,0 +1,109 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.openapi.models.V1Secret;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of full secrets (including their data) bounded by the total size of the data.
+ * A cached secret is only returned for the resourceVersion it was cached with.
+ */
+public class SecretPayloadCache {
+
+    // Rough size of the metadata of a secret, so secrets without data still count
+    private static final long METADATA_SIZE = 512;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, V1Secret> secrets = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SecretPayloadCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the cached secret, or null if it is not cached or cached with another resourceVersion.
+     */
+    public synchronized V1Secret get(String namespace, String name, String resourceVersion) {
+        V1Secret secret = secrets.get(key(namespace, name));
+        if (secret == null || !Objects.equals(secret.getMetadata().getResourceVersion(), resourceVersion)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return secret;
+    }
+
+    public synchronized void put(V1Secret secret) {
+        long size = sizeOf(secret);
+        String key = key(secret.getMetadata().getNamespace(), secret.getMetadata().getName());
+        remove(key);
+        if (size > maxBytes) {
+            return;
+        }
+
+        secrets.put(key, secret);
+        bytes += size;
+
+        Iterator<Map.Entry<String, V1Secret>> iterator = secrets.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, V1Secret> eldest = iterator.next();
+            iterator.remove();
+            bytes -= sizeOf(eldest.getValue());
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void remove(String namespace, String name) {
+        remove(key(namespace, name));
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private void remove(String key) {
+        V1Secret removed = secrets.remove(key);
+        if (removed != null) {
+            bytes -= sizeOf(removed);
+        }
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+
+    static long sizeOf(V1Secret secret) {
+        long size = METADATA_SIZE;
+        if (secret.getData() != null) {
+            for (Map.Entry<String, byte[]> entry : secret.getData().entrySet()) {
+                size += entry.getKey().length() + (entry.getValue() == null ? 0 : entry.getValue().length);
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,312 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Resolves the data of secrets whose informers only keep metadata or {@link SecretSummary}s.
+ * <p>
+ * When full secrets are watched, their data is handed off by the {@link PayloadStrippingListerWatcher}
+ * and released once the reconciler takes it. When only the metadata of secrets is watched, secrets that
+ * are not used yet are kept as pending, they will be fetched the first time a lookup touches their namespace.
+ * Fetched secrets are kept in a size-bounded {@link SecretPayloadCache}.
+ * <p>
+ * Namespaces are resolved by a bounded number of threads, a namespace with many pending secrets is listed page by
+ * page with the selector of the watches instead of fetching its secrets one by one, a few pending secrets are read
+ * by name. Lookups wait for the resolution at most for the resolve timeout, secrets resolved later are published
+ * as they come.
+ */
+public class SecretResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecretResolver.class);
+
+    private static final int RESOLVE_CONCURRENCY = SystemProperties.getInteger(SecretResolver.class.getName() + ".resolveConcurrency", 4);
+    private static final Duration RESOLVE_TIMEOUT = Duration.ofMillis(SystemProperties.getLong(SecretResolver.class.getName() + ".resolveTimeoutMillis", 5000L));
+    // Namespaces with at least this number of pending secrets are listed instead of fetching the secrets one by one
+    private static final int LIST_THRESHOLD = SystemProperties.getInteger(SecretResolver.class.getName() + ".listThreshold", 10);
+    private static final int LIST_PAGE_SIZE = 500;
+
+    private final CoreV1Api coreV1Api;
+    private final SecretSelector selector;
+    private final SecretPayloadCache payloadCache;
+    private final Consumer<V1Secret> onResolved;
+
+    // Maps of resourceVersions of the secrets not resolved yet, keyed by namespace, then by name
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> pendingSecrets = new ConcurrentHashMap<>();
+    // Full secrets received by the informers but not taken by the reconciler yet, keyed by namespace/name
+    private final ConcurrentHashMap<String, V1Secret> receivedSecrets = new ConcurrentHashMap<>();
+    // resourceVersions of secrets converted by the bulk load, keyed by namespace/name
+    private final ConcurrentHashMap<String, String> loadedSecrets = new ConcurrentHashMap<>();
+    // Namespaces being resolved, lookups of the same namespace wait for the same resolution
+    private final ConcurrentHashMap<String, Future<?>> resolving = new ConcurrentHashMap<>();
+    private final ExecutorService resolvers = Executors.newFixedThreadPool(Math.max(1, RESOLVE_CONCURRENCY),
+            new NamingThreadFactory(new DaemonThreadFactory(), SecretResolver.class.getSimpleName()));
+
+    /**
+     * @param selector selects the secrets that might be converted in a namespace, namespaces are listed with it.
+     * @param onResolved receives full secrets once they are fetched by a lookup.
+     */
+    public SecretResolver(CoreV1Api coreV1Api, SecretSelector selector, SecretPayloadCache payloadCache,
+                          Consumer<V1Secret> onResolved) {
+        this.coreV1Api = coreV1Api;
+        this.selector = selector;
+        this.payloadCache = payloadCache;
+        this.onResolved = onResolved;
+    }
+
+    /**
+     * Keep the full secret received from the API server until the reconciler takes it,
+     * an older version of the secret will be replaced.
+     */
+    public void offer(V1Secret secret) {
+        receivedSecrets.put(key(secret.getMetadata().getNamespace(), secret.getMetadata().getName()), secret);
+    }
+
+    /**
+     * Release the full secret handed off with the resourceVersion, the reconciler won't take it.
+     */
+    public void release(String namespace, String name, String resourceVersion) {
+        receivedSecrets.computeIfPresent(key(namespace, name), (key, secret) ->
+                Objects.equals(secret.getMetadata().getResourceVersion(), resourceVersion) ? null : secret);
+    }
+
+    /**
+     * Remember that the secret was converted by the bulk load, so the reconciler doesn't need to fetch it again.
+     */
+    public void markLoaded(String namespace, String name, String resourceVersion) {
+        loadedSecrets.put(key(namespace, name), resourceVersion);
+    }
+
+    /**
+     * @return true if the secret with the resourceVersion was converted by the bulk load, it will be forgotten.
+     */
+    public boolean takeLoaded(String namespace, String name, String resourceVersion) {
+        return resourceVersion != null && loadedSecrets.remove(key(namespace, name), resourceVersion);
+    }
+
+    public void markPending(String namespace, String name, String resourceVersion) {
+        pendingSecrets.computeIfAbsent(namespace, ns -> new ConcurrentHashMap<>()).put(name, resourceVersion);
+    }
+
+    /**
+     * Forget a deleted secret.
+     */
+    public void forget(String namespace, String name) {
+        pendingSecrets.computeIfPresent(namespace, (ns, secrets) -> {
+            secrets.remove(name);
+            return secrets.isEmpty() ? null : secrets;
+        });
+        receivedSecrets.remove(key(namespace, name));
+        loadedSecrets.remove(key(namespace, name));
+        payloadCache.remove(namespace, name);
+    }
+
+    public boolean hasPending() {
+        return !pendingSecrets.isEmpty();
+    }
+
+    /**
+     * Fetch the pending secrets in the namespaces, waits at most for the resolve timeout.
+     * @param namespaces namespaces to resolve, or null to resolve pending secrets in all namespaces.
+     * @return true if all pending secrets in the namespaces have been resolved or failed within the timeout.
+     */
+    public boolean resolve(Collection<String> namespaces) {
+        Collection<String> targets = namespaces == null ? new ArrayList<>(pendingSecrets.keySet()) : namespaces;
+        List<Future<?>> resolutions = new ArrayList<>();
+        for (String namespace : targets) {
+            if (pendingSecrets.containsKey(namespace)) {
+                resolutions.add(resolveAsync(namespace));
+            }
+        }
+
+        long deadline = System.nanoTime() + RESOLVE_TIMEOUT.toNanos();
+        for (Future<?> resolution : resolutions) {
+            try {
+                resolution.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                logger.debug("Pending Secrets are not resolved in {} ms, they will be published once resolved", RESOLVE_TIMEOUT.toMillis());
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                logger.warn("Unable to resolve pending Secrets", e.getCause());
+            }
+        }
+        return true;
+    }
+
+    private Future<?> resolveAsync(String namespace) {
+        FutureTask<Void> resolution = new FutureTask<>(() -> resolveNamespace(namespace), null);
+        Future<?> existing = resolving.putIfAbsent(namespace, resolution);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            resolvers.execute(() -> {
+                try {
+                    resolution.run();
+                } finally {
+                    resolving.remove(namespace, resolution);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the resolver is shut down
+            resolving.remove(namespace, resolution);
+            return CompletableFuture.completedFuture(null);
+        }
+        return resolution;
+    }
+
+    private void resolveNamespace(String namespace) {
+        Map<String, String> secrets = pendingSecrets.get(namespace);
+        if (secrets == null) {
+            return;
+        }
+
+        if (secrets.size() >= LIST_THRESHOLD) {
+            listNamespace(namespace, secrets);
+        } else {
+            for (Map.Entry<String, String> pending : secrets.entrySet()) {
+                String name = pending.getKey();
+                String resourceVersion = pending.getValue();
+                // a newer version is pending
+                if (!secrets.remove(name, resourceVersion)) {
+                    continue;
+                }
+
+                try {
+                    V1Secret secret = fetch(namespace, name, resourceVersion);
+                    if (secret != null) {
+                        onResolved.accept(secret);
+                    }
+                } catch (ApiException e) {
+                    logger.warn("Unable to fetch Secret '{}/{}', will retry on next lookup, reason: {}",
+                            namespace, name, e.getMessage());
+                    secrets.putIfAbsent(name, resourceVersion);
+                }
+            }
+        }
+
+        pendingSecrets.computeIfPresent(namespace, (ns, s) -> s.isEmpty() ? null : s);
+    }
+
+    /**
+     * List the secrets in the namespace that the selector matches page by page and resolve the pending ones, so
+     * secrets that can't be converted, e.g. Helm releases, are not transferred. Pending secrets that are
+     * not listed don't exist or don't match anymore, the informers will tell.
+     */
+    private void listNamespace(String namespace, Map<String, String> secrets) {
+        Map<String, String> listing = new HashMap<>(secrets);
+        String continueToken = null;
+        try {
+            do {
+                V1SecretList page = coreV1Api.listNamespacedSecret(namespace, null, null, continueToken,
+                        selector.getFieldSelector(), selector.getLabelSelector(), LIST_PAGE_SIZE, null, null, null, null);
+                for (V1Secret secret : page.getItems()) {
+                    String name = secret.getMetadata().getName();
+                    String resourceVersion = listing.remove(name);
+                    // listed secrets are at least as new as the pending version
+                    if (resourceVersion != null && secrets.remove(name, resourceVersion)) {
+                        payloadCache.put(secret);
+                        onResolved.accept(secret);
+                    }
+                }
+                continueToken = page.getMetadata() == null ? null : page.getMetadata().getContinue();
+            } while (continueToken != null && !continueToken.isEmpty());
+        } catch (ApiException e) {
+            logger.warn("Unable to list Secrets in namespace '{}', will retry on next lookup, reason: {}",
+                    namespace, e.getMessage());
+            return;
+        }
+
+        listing.forEach(secrets::remove);
+    }
+
+    public void shutDown() {
+        resolvers.shutdownNow();
+    }
+
+    /**
+     * Wait for the resolutions in flight after {@link #shutDown()}.
+     * @return true if they finished within the timeout.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return resolvers.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Take the full secret handed off by the informer, or get it from the payload cache, or fetch it from
+     * the API server if it is not there with the resourceVersion. A handed off secret is released once taken.
+     * @return the full secret, or null if the secret doesn't exist anymore.
+     * @throws ApiException if the secret could not be fetched.
+     */
+    public V1Secret fetch(String namespace, String name, String resourceVersion) throws ApiException {
+        String key = key(namespace, name);
+        V1Secret secret = receivedSecrets.get(key);
+        if (secret != null && Objects.equals(secret.getMetadata().getResourceVersion(), resourceVersion)
+                && receivedSecrets.remove(key, secret)) {
+            return secret;
+        }
+
+        secret = payloadCache.get(namespace, name, resourceVersion);
+        if (secret != null) {
+            return secret;
+        }
+
+        try {
+            secret = coreV1Api.readNamespacedSecret(name, namespace, null, null, null);
+        } catch (ApiException e) {
+            if (e.getCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            throw e;
+        }
+
+        payloadCache.put(secret);
+        return secret;
+    }
+
+    public SecretPayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    /**
+     * @return number of full secrets received but not taken by the reconciler yet.
+     */
+    public int getReceivedSize() {
+        return receivedSecrets.size();
+    }
+
+    private static String key(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+}
@@ -0,0 +1,172 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.alauda.jenkins.plugins.credentials.convertor.ConversionPipeline;
+import io.alauda.jenkins.plugins.credentials.convertor.SecretToCredentialConverter;
+import io.alauda.jenkins.plugins.credentials.rule.KubernetesSecretRule;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Label selector and field selector of a list/watch call of secrets.
+ */
+public final class SecretSelector {
+
+    // Types of secrets defined by Kubernetes and common tools, the ones no converter handles are excluded by a single selector
+    private static final List<String> WELL_KNOWN_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "Opaque",
+            "kubernetes.io/service-account-token",
+            "kubernetes.io/dockercfg",
+            "kubernetes.io/dockerconfigjson",
+            "kubernetes.io/basic-auth",
+            "kubernetes.io/ssh-auth",
+            "kubernetes.io/tls",
+            "bootstrap.kubernetes.io/token",
+            "helm.sh/release.v1"));
+
+    private final String labelSelector;
+    private final String fieldSelector;
+
+    public SecretSelector(String labelSelector, String fieldSelector) {
+        this.labelSelector = StringUtils.defaultIfEmpty(labelSelector, null);
+        this.fieldSelector = StringUtils.defaultIfEmpty(fieldSelector, null);
+    }
+
+    public String getLabelSelector() {
+        return labelSelector;
+    }
+
+    public String getFieldSelector() {
+        return fieldSelector;
+    }
+
+    /**
+     * Compile the selectors that will be pushed down to the API server. Selector fragments of
+     * {@link KubernetesSecretRule}s are combined with the configured label selector, and as a field selector
+     * cannot express the union of secret types, there will be one selector per type declared by
+     * {@link SecretToCredentialConverter}s.
+     * @param labelSelector the configured label selector.
+     * @param credentialsTypeLabelRequired if true, only secrets labeled with the credentials types handled by
+     *                                     converters will be selected, whatever their types are.
+     * @return selectors whose union matches all secrets that might be converted.
+     */
+    public static List<SecretSelector> compile(String labelSelector, boolean credentialsTypeLabelRequired) {
+        return compile(labelSelector, credentialsTypeLabelRequired, false);
+    }
+
+    /**
+     * Compile one selector that matches all secrets that might be converted, used where one watch per type would
+     * multiply the watches, e.g. one watch per namespace. Instead of selecting the convertible types, the well
+     * known types that no converter handles are excluded, secrets of other types are filtered by the converters.
+     * @param labelSelector the configured label selector.
+     * @param credentialsTypeLabelRequired see {@link #compile(String, boolean)}.
+     * @return a selector that matches all secrets that might be converted.
+     */
+    public static SecretSelector compileSingle(String labelSelector, boolean credentialsTypeLabelRequired) {
+        return compile(labelSelector, credentialsTypeLabelRequired, true).get(0);
+    }
+
+    private static List<SecretSelector> compile(String labelSelector, boolean credentialsTypeLabelRequired, boolean single) {
+        List<String> labelSelectors = new ArrayList<>();
+        List<String> fieldSelectors = new ArrayList<>();
+        if (StringUtils.isNotBlank(labelSelector)) {
+            labelSelectors.add(labelSelector.trim());
+        }
+        if (credentialsTypeLabelRequired) {
+            labelSelectors.add(getCredentialsTypeSelector());
+        }
+        for (KubernetesSecretRule rule : KubernetesSecretRule.all()) {
+            if (StringUtils.isNotBlank(rule.getLabelSelector())) {
+                labelSelectors.add(rule.getLabelSelector().trim());
+            }
+            if (StringUtils.isNotBlank(rule.getFieldSelector())) {
+                fieldSelectors.add(rule.getFieldSelector().trim());
+            }
+        }
+
+        String compiledLabelSelector = String.join(",", labelSelectors);
+        String compiledFieldSelector = String.join(",", fieldSelectors);
+
+        // secrets are routed by the label, so their types don't matter
+        Collection<String> types = credentialsTypeLabelRequired ? null : getConvertibleTypes();
+        if (types == null) {
+            return Collections.singletonList(new SecretSelector(compiledLabelSelector, compiledFieldSelector));
+        }
+
+        if (single) {
+            List<String> excluded = new ArrayList<>();
+            if (!compiledFieldSelector.isEmpty()) {
+                excluded.add(compiledFieldSelector);
+            }
+            for (String type : WELL_KNOWN_TYPES) {
+                if (!types.contains(type)) {
+                    excluded.add("type!=" + type);
+                }
+            }
+            return Collections.singletonList(new SecretSelector(compiledLabelSelector, String.join(",", excluded)));
+        }
+
+        List<SecretSelector> selectors = new ArrayList<>();
+        for (String type : types) {
+            String typeSelector = "type=" + type;
+            selectors.add(new SecretSelector(compiledLabelSelector,
+                    compiledFieldSelector.isEmpty() ? typeSelector : compiledFieldSelector + "," + typeSelector));
+        }
+        return selectors;
+    }
+
+    /**
+     * @return label selector that matches secrets whose credentials type label is handled by converters.
+     */
+    private static String getCredentialsTypeSelector() {
+        Collection<String> credentialsTypes = new TreeSet<>(ConversionPipeline.get().getCredentialsTypes());
+        if (credentialsTypes.isEmpty()) {
+            return SecretUtils.JENKINS_IO_CREDENTIALS_TYPE_LABEL;
+        }
+        return SecretUtils.JENKINS_IO_CREDENTIALS_TYPE_LABEL + " in (" + String.join(",", credentialsTypes) + ")";
+    }
+
+    /**
+     * @return the types of secrets that can be converted, or null if any converter doesn't declare its types.
+     */
+    private static Collection<String> getConvertibleTypes() {
+        Collection<String> types = new TreeSet<>();
+        for (SecretToCredentialConverter converter : SecretToCredentialConverter.all()) {
+            Collection<String> secretTypes = converter.getSecretTypes();
+            if (secretTypes == null) {
+                return null;
+            }
+            types.addAll(secretTypes);
+        }
+        return types;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SecretSelector)) {
+            return false;
+        }
+        SecretSelector that = (SecretSelector) o;
+        return Objects.equals(labelSelector, that.labelSelector) && Objects.equals(fieldSelector, that.fieldSelector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(labelSelector, fieldSelector);
+    }
+
+    @Override
+    public String toString() {
+        return "labelSelector=" + StringUtils.defaultString(labelSelector) + ", fieldSelector=" + StringUtils.defaultString(fieldSelector);
+    }
+}
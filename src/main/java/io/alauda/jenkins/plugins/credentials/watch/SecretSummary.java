@@ -0,0 +1,123 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.apache.commons.codec.binary.Hex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A secret without its data, kept by the informers instead of the full secret. It only has what is needed to
+ * detect changes: the metadata, the type and a digest of the content that conversion depends on.
+ */
+public class SecretSummary extends V1Secret {
+
+    private final String contentDigest;
+
+    private SecretSummary(V1Secret secret, String contentDigest) {
+        setApiVersion(secret.getApiVersion());
+        setKind(secret.getKind());
+        setMetadata(secret.getMetadata());
+        setType(secret.getType());
+        this.contentDigest = contentDigest;
+    }
+
+    /**
+     * @return the summary of the secret, or the secret itself if it is already a summary.
+     */
+    public static V1Secret of(V1Secret secret) {
+        if (secret == null || secret instanceof SecretSummary) {
+            return secret;
+        }
+        return new SecretSummary(secret, digest(secret));
+    }
+
+    /**
+     * Restore a persisted summary.
+     * @param secret the secret without data.
+     * @param contentDigest the digest of the content of the summary.
+     */
+    public static SecretSummary restore(V1Secret secret, String contentDigest) {
+        return new SecretSummary(secret, contentDigest);
+    }
+
+    /**
+     * @return digest of the type, data, labels and annotations of the secret.
+     */
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    /**
+     * @return true if both secrets are summaries and their contents are the same, the metadata of secrets that
+     * are not summaries doesn't tell whether their data changed.
+     */
+    public static boolean sameContent(V1Secret oldSecret, V1Secret newSecret) {
+        return oldSecret instanceof SecretSummary && newSecret instanceof SecretSummary
+                && ((SecretSummary) oldSecret).contentDigest.equals(((SecretSummary) newSecret).contentDigest);
+    }
+
+    static String digest(V1Secret secret) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        update(messageDigest, secret.getType() == null ? null : secret.getType().getBytes(StandardCharsets.UTF_8));
+        update(messageDigest, secret.getData());
+        V1ObjectMeta metadata = secret.getMetadata() == null ? new V1ObjectMeta() : secret.getMetadata();
+        update(messageDigest, toBytes(metadata.getLabels()));
+        update(messageDigest, toBytes(metadata.getAnnotations()));
+        return Hex.encodeHexString(messageDigest.digest());
+    }
+
+    private static void update(MessageDigest messageDigest, Map<String, byte[]> entries) {
+        if (entries == null) {
+            update(messageDigest, (byte[]) null);
+            return;
+        }
+
+        // sort the keys so the digest doesn't depend on the order of the map
+        messageDigest.update(ByteBuffer.allocate(Integer.BYTES).putInt(entries.size()).array());
+        for (Map.Entry<String, byte[]> entry : new TreeMap<>(entries).entrySet()) {
+            update(messageDigest, entry.getKey().getBytes(StandardCharsets.UTF_8));
+            update(messageDigest, entry.getValue() == null ? new byte[0] : entry.getValue());
+        }
+    }
+
+    /**
+     * Prefix the value with its length so different contents cannot produce the same input, -1 stands for null.
+     */
+    private static void update(MessageDigest messageDigest, byte[] value) {
+        messageDigest.update(ByteBuffer.allocate(Integer.BYTES).putInt(value == null ? -1 : value.length).array());
+        if (value != null) {
+            messageDigest.update(value);
+        }
+    }
+
+    private static Map<String, byte[]> toBytes(Map<String, String> entries) {
+        if (entries == null) {
+            return null;
+        }
+        Map<String, byte[]> bytes = new TreeMap<>();
+        entries.forEach((key, value) -> bytes.put(key, value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8)));
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && o instanceof SecretSummary && contentDigest.equals(((SecretSummary) o).contentDigest);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + contentDigest.hashCode();
+    }
+}
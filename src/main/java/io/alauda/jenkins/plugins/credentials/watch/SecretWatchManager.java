@@ -0,0 +1,480 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import com.google.gson.reflect.TypeToken;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.kubernetes.client.extended.controller.reconciler.Request;
+import io.kubernetes.client.extended.workqueue.WorkQueue;
+import io.kubernetes.client.informer.ListerWatcher;
+import io.kubernetes.client.informer.ResourceEventHandler;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.cache.Lister;
+import io.kubernetes.client.informer.impl.DefaultSharedIndexInformer;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.Pair;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.util.CallGeneratorParams;
+import io.kubernetes.client.util.Watch;
+import io.kubernetes.client.util.Watchable;
+import jenkins.util.SystemProperties;
+import okhttp3.Call;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Manages the informers of secrets, either informers for all namespaces or informers per namespace.
+ * Secrets in all namespaces are watched with one informer per {@link SecretSelector}, as one selector cannot always
+ * express the union of secrets we want, while each namespace is watched with a single informer so the number of
+ * watches only grows with the number of namespaces. All informers share the same event handler, so events of all
+ * namespaces go to the same work queue, and run on the same thread pool.
+ */
+public class SecretWatchManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecretWatchManager.class);
+
+    // Key of the watch that lists secrets in all namespaces
+    private static final String ALL_NAMESPACES = "";
+
+    // Fall back to full objects if the API server doesn't support PartialObjectMetadata
+    private static final String LIST_METADATA_ACCEPT = "application/json;as=PartialObjectMetadataList;g=meta.k8s.io;v=v1,application/json";
+    private static final String WATCH_METADATA_ACCEPT = "application/json;as=PartialObjectMetadata;g=meta.k8s.io;v=v1,application/json";
+
+    // Maximum number of secrets per list request, 0 to list all secrets in one request
+    private static final int LIST_PAGE_SIZE = SystemProperties.getInteger(SecretWatchManager.class.getName() + ".listPageSize", 500);
+    // Watches that are not needed anymore are stopped at the latest after this, even if their replacements haven't synced
+    private static final Duration RETIRE_TIMEOUT = Duration.ofSeconds(
+            SystemProperties.getLong(SecretWatchManager.class.getName() + ".retireTimeoutSeconds", 300L));
+    private static final long RETIRE_POLL_MILLIS = 100;
+
+    private final CoreV1Api coreV1Api;
+    private final List<SecretSelector> selectors;
+    private final List<SecretSelector> namespacedSelectors;
+    private final boolean metadataOnly;
+    private final Consumer<V1Secret> payloadSink;
+    private final Consumer<List<V1Secret>> bulkLoader;
+    private final LongConsumer onRelisted;
+    private final ResourceEventHandler<V1Secret> eventHandler;
+    private final WorkQueue<Request> workQueue;
+
+    // Maps of watches keyed by namespace, one watch per selector
+    private final Map<String, List<SecretWatch>> watches = new ConcurrentHashMap<>();
+    // Persisted states of watches not started yet, keyed by namespace and selector
+    private final Map<String, WatchState> restoredStates = new ConcurrentHashMap<>();
+    // Watches that are not needed anymore keyed by namespace, they serve secrets until the new watches have synced
+    private final Map<String, List<SecretWatch>> retiring = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retirer = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), SecretWatchManager.class.getSimpleName() + "-retirer"));
+    // Guarded by this
+    private ScheduledFuture<?> retirement;
+    // Runs the informers of all watches
+    private final ExecutorService informerExecutor = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), SecretWatchManager.class.getSimpleName() + "-informer"));
+
+    /**
+     * @param selectors selectors of the informers that watch all namespaces.
+     * @param namespacedSelector selector of the informer of each namespace.
+     * @param metadataOnly if true, only the metadata of secrets will be watched and cached by the informers.
+     * @param payloadSink receives the full secrets when they are watched, informers only cache {@link SecretSummary}s.
+     * @param bulkLoader receives the full secrets of each page listed by the informers when they are watched.
+     * @param onRelisted receives the {@link System#nanoTime()} a relist of an informer started at, once it is done.
+     */
+    public SecretWatchManager(CoreV1Api coreV1Api, List<SecretSelector> selectors, SecretSelector namespacedSelector,
+                              boolean metadataOnly, Consumer<V1Secret> payloadSink, Consumer<List<V1Secret>> bulkLoader,
+                              ResourceEventHandler<V1Secret> eventHandler, WorkQueue<Request> workQueue,
+                              LongConsumer onRelisted) {
+        this.coreV1Api = coreV1Api;
+        this.selectors = selectors;
+        this.namespacedSelectors = Collections.singletonList(namespacedSelector);
+        this.metadataOnly = metadataOnly;
+        this.payloadSink = payloadSink;
+        this.bulkLoader = bulkLoader;
+        this.eventHandler = eventHandler;
+        this.workQueue = workQueue;
+        this.onRelisted = onRelisted;
+    }
+
+    /**
+     * Watch secrets in all namespaces with a single informer.
+     */
+    public synchronized void watchAllNamespaces() {
+        watchNamespaces(Collections.singleton(ALL_NAMESPACES));
+    }
+
+    /**
+     * Watch secrets in the namespaces. Informers of namespaces that are not needed anymore keep serving their
+     * secrets until the new informers have synced, e.g. when switching between watching all namespaces and
+     * watching namespaces one by one, so credentials don't disappear in between. Then they are stopped, and only
+     * their secrets that no new informer has are queued, so the reconciler can remove the credentials.
+     * @param namespaces namespaces to watch.
+     */
+    public synchronized void watchNamespaces(Set<String> namespaces) {
+        for (String namespace : namespaces) {
+            if (watches.containsKey(namespace)) {
+                continue;
+            }
+
+            List<SecretWatch> reused = retiring.remove(namespace);
+            if (reused != null) {
+                watches.put(namespace, reused);
+                continue;
+            }
+
+            List<SecretSelector> selectorsOfNamespace = ALL_NAMESPACES.equals(namespace) ? selectors : namespacedSelectors;
+            List<SecretWatch> started = new ArrayList<>();
+            for (SecretSelector selector : selectorsOfNamespace) {
+                started.add(new SecretWatch(namespace, selector));
+            }
+            watches.put(namespace, started);
+            started.forEach(SecretWatch::start);
+            logger.info("Started watching Secrets in namespace '{}' with selectors {}",
+                    ALL_NAMESPACES.equals(namespace) ? "*" : namespace, selectorsOfNamespace);
+        }
+
+        for (String namespace : new HashSet<>(watches.keySet())) {
+            if (!namespaces.contains(namespace)) {
+                retiring.put(namespace, watches.remove(namespace));
+            }
+        }
+
+        if (!retiring.isEmpty() && retirement == null) {
+            long deadline = System.nanoTime() + RETIRE_TIMEOUT.toNanos();
+            retirement = retirer.scheduleWithFixedDelay(() -> retireWhenReplaced(deadline),
+                    0, RETIRE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the retiring watches once all watches have synced or the deadline has passed, and queue their
+     * secrets that are not watched anymore.
+     */
+    private synchronized void retireWhenReplaced(long deadline) {
+        if (retiring.isEmpty() || !hasSynced() && System.nanoTime() - deadline < 0) {
+            return;
+        }
+        if (!hasSynced()) {
+            logger.warn("Watches of Secrets haven't synced in {}s, will stop the watches they replace anyway", RETIRE_TIMEOUT.getSeconds());
+        }
+
+        Map<String, List<SecretWatch>> retired = new HashMap<>(retiring);
+        retiring.clear();
+        retirement.cancel(false);
+        retirement = null;
+
+        retired.forEach((namespace, stopped) -> {
+            stopped.forEach(SecretWatch::stop);
+            logger.info("Stopped watching Secrets in namespace '{}'", ALL_NAMESPACES.equals(namespace) ? "*" : namespace);
+        });
+        retired.values().forEach(stopped -> stopped.forEach(watch -> watch.list().forEach(secret -> {
+            String namespace = secret.getMetadata().getNamespace();
+            String name = secret.getMetadata().getName();
+            if (get(namespace, name) == null) {
+                workQueue.add(new Request(namespace, name));
+            }
+        })));
+    }
+
+    /**
+     * @return namespaces that are watched, or an empty set if secrets in all namespaces are watched.
+     */
+    public Set<String> getWatchedNamespaces() {
+        Set<String> namespaces = new HashSet<>(watches.keySet());
+        namespaces.remove(ALL_NAMESPACES);
+        return namespaces;
+    }
+
+    /**
+     * Get the secret from the local cache of the informers, including the informers that are being replaced.
+     * @return the secret, or null if it doesn't exist or its namespace is not watched.
+     */
+    public V1Secret get(String namespace, String name) {
+        V1Secret secret = get(watches, namespace, name);
+        if (secret == null && !retiring.isEmpty()) {
+            secret = get(retiring, namespace, name);
+        }
+        return secret;
+    }
+
+    private static V1Secret get(Map<String, List<SecretWatch>> watches, String namespace, String name) {
+        List<SecretWatch> watchesInNamespace = watches.get(namespace);
+        if (watchesInNamespace == null) {
+            watchesInNamespace = watches.get(ALL_NAMESPACES);
+        }
+        if (watchesInNamespace == null) {
+            return null;
+        }
+
+        for (SecretWatch watch : watchesInNamespace) {
+            V1Secret secret = watch.get(namespace, name);
+            if (secret != null) {
+                return secret;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return secrets in the local caches of all informers, including the informers that are being replaced.
+     * A secret might be returned more than once.
+     */
+    public List<V1Secret> list() {
+        List<V1Secret> secrets = new ArrayList<>();
+        watches.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(watch -> secrets.addAll(watch.list())));
+        retiring.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(watch -> secrets.addAll(watch.list())));
+        return secrets;
+    }
+
+    /**
+     * Resume watches from persisted states when they start, only takes effect when full secrets are watched.
+     * @param states states keyed as returned by {@link #getWatchStates()}.
+     */
+    public void restore(Map<String, WatchState> states) {
+        if (!metadataOnly) {
+            restoredStates.putAll(states);
+        }
+    }
+
+    /**
+     * @return states of synced watches keyed by namespace and selector, empty if only metadata of secrets is watched.
+     */
+    public Map<String, WatchState> getWatchStates() {
+        Map<String, WatchState> states = new HashMap<>();
+        if (metadataOnly) {
+            return states;
+        }
+        watches.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(watch -> {
+            WatchState state = watch.hasSynced() ? watch.getState() : null;
+            if (state != null && StringUtils.isNotEmpty(state.getResourceVersion())) {
+                states.put(watch.key, state);
+            }
+        }));
+        return states;
+    }
+
+    public boolean hasSynced() {
+        return watches.values().stream().flatMap(List::stream).allMatch(SecretWatch::hasSynced);
+    }
+
+    /**
+     * A watch resumed from a restored state only knows the persisted secrets until the API server confirms the
+     * state, by an event or bookmark of the resumed watch, or by a relist if the resourceVersion is gone.
+     * @return true if no watch serves a restored state that is not confirmed yet.
+     */
+    public boolean hasConfirmedRestoredStates() {
+        return watches.values().stream().flatMap(List::stream).allMatch(SecretWatch::hasConfirmedRestoredState);
+    }
+
+    /**
+     * @return progress of watches keyed by namespace and selector.
+     */
+    public Map<String, WatchProgress> getWatchProgress() {
+        Map<String, WatchProgress> progress = new HashMap<>();
+        watches.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(watch ->
+                progress.put(watch.key, watch.progress)));
+        return progress;
+    }
+
+    /**
+     * Close the watches of synced informers that have made no progress within the timeout, the informers will
+     * watch again from the last resourceVersion they have seen.
+     * @return number of watches that have been closed.
+     */
+    public int rewatchStalled(Duration timeout) {
+        int count = 0;
+        for (List<SecretWatch> watchesInNamespace : watches.values()) {
+            for (SecretWatch watch : watchesInNamespace) {
+                if (watch.hasSynced() && watch.progress.rewatchIfStalled(timeout)) {
+                    logger.warn("Watch of Secrets '{}' made no progress in {}s, will watch again from resourceVersion {}",
+                            watch.key, timeout.getSeconds(), watch.progress.getResourceVersion());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Create a watch that is not timed out by the client, the API server closes it after timeoutSeconds.
+     */
+    static Watchable<V1Secret> createWatch(ApiClient apiClient, Call call) throws ApiException {
+        call = apiClient.getHttpClient().newBuilder().readTimeout(0, TimeUnit.SECONDS).build().newCall(call.request());
+        return Watch.createWatch(apiClient, call, new TypeToken<Watch.Response<V1Secret>>() {
+        }.getType());
+    }
+
+    private Call listCall(String namespace, SecretSelector selector, CallGeneratorParams params,
+                          Integer limit, String continueToken) throws ApiException {
+        // bookmarks keep the resourceVersion of the watch fresh and prove the watch is alive on quiet clusters
+        Boolean allowWatchBookmarks = Boolean.TRUE.equals(params.watch) ? Boolean.TRUE : null;
+        if (ALL_NAMESPACES.equals(namespace)) {
+            return coreV1Api.listSecretForAllNamespacesCall(
+                    allowWatchBookmarks,
+                    continueToken,
+                    selector.getFieldSelector(),
+                    selector.getLabelSelector(),
+                    limit,
+                    null,
+                    params.resourceVersion,
+                    null,
+                    params.timeoutSeconds,
+                    params.watch,
+                    null);
+        }
+
+        return coreV1Api.listNamespacedSecretCall(
+                namespace,
+                null,
+                allowWatchBookmarks,
+                continueToken,
+                selector.getFieldSelector(),
+                selector.getLabelSelector(),
+                limit,
+                params.resourceVersion,
+                null,
+                params.timeoutSeconds,
+                params.watch,
+                null);
+    }
+
+    /**
+     * Build a list/watch call that asks the API server to return PartialObjectMetadata instead of the full secrets,
+     * they can be deserialized as secrets that only have metadata.
+     */
+    private Call listMetadataCall(String namespace, SecretSelector selector, CallGeneratorParams params) throws ApiException {
+        ApiClient apiClient = coreV1Api.getApiClient();
+
+        String path = ALL_NAMESPACES.equals(namespace)
+                ? "/api/v1/secrets"
+                : "/api/v1/namespaces/" + apiClient.escapeString(namespace) + "/secrets";
+
+        List<Pair> queryParams = new ArrayList<>();
+        queryParams.addAll(apiClient.parameterToPair("fieldSelector", selector.getFieldSelector()));
+        queryParams.addAll(apiClient.parameterToPair("labelSelector", selector.getLabelSelector()));
+        queryParams.addAll(apiClient.parameterToPair("resourceVersion", params.resourceVersion));
+        queryParams.addAll(apiClient.parameterToPair("timeoutSeconds", params.timeoutSeconds));
+        queryParams.addAll(apiClient.parameterToPair("watch", params.watch));
+        if (Boolean.TRUE.equals(params.watch)) {
+            queryParams.addAll(apiClient.parameterToPair("allowWatchBookmarks", true));
+        }
+
+        Map<String, String> headerParams = new HashMap<>();
+        headerParams.put("Accept", Boolean.TRUE.equals(params.watch) ? WATCH_METADATA_ACCEPT : LIST_METADATA_ACCEPT);
+
+        return apiClient.buildCall(path, "GET", queryParams, new ArrayList<>(), null, headerParams,
+                new HashMap<>(), new HashMap<>(), new String[]{"BearerToken"}, null);
+    }
+
+    public synchronized void shutDown() {
+        retirer.shutdownNow();
+        retirement = null;
+        watches.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(SecretWatch::stop));
+        watches.clear();
+        retiring.values().forEach(watchesInNamespace -> watchesInNamespace.forEach(SecretWatch::stop));
+        retiring.clear();
+        informerExecutor.shutdown();
+    }
+
+    /**
+     * Lists and watches the PartialObjectMetadata of secrets.
+     */
+    private class MetadataListerWatcher implements ListerWatcher<V1Secret, V1SecretList> {
+        private final String namespace;
+        private final SecretSelector selector;
+
+        MetadataListerWatcher(String namespace, SecretSelector selector) {
+            this.namespace = namespace;
+            this.selector = selector;
+        }
+
+        @Override
+        public V1SecretList list(CallGeneratorParams params) throws ApiException {
+            Call call = listMetadataCall(namespace, selector, params);
+            return coreV1Api.getApiClient().<V1SecretList>execute(call, V1SecretList.class).getData();
+        }
+
+        @Override
+        public Watchable<V1Secret> watch(CallGeneratorParams params) throws ApiException {
+            return createWatch(coreV1Api.getApiClient(), listMetadataCall(namespace, selector, params));
+        }
+    }
+
+    private class SecretWatch {
+        private final SharedIndexInformer<V1Secret> informer;
+        private final Lister<V1Secret> lister;
+        private final WatchProgress progress = new WatchProgress();
+        private final String key;
+        // Lister watcher of full secrets, null when only metadata is watched
+        private final PayloadStrippingListerWatcher payloadListerWatcher;
+        private final boolean restored;
+
+        SecretWatch(String namespace, SecretSelector selector) {
+            key = namespace + "/" + selector;
+            ListerWatcher<V1Secret, V1SecretList> listerWatcher;
+            if (metadataOnly) {
+                listerWatcher = new MetadataListerWatcher(namespace, selector);
+                payloadListerWatcher = null;
+                restored = false;
+            } else {
+                WatchState restoredState = restoredStates.remove(key);
+                payloadListerWatcher = new PayloadStrippingListerWatcher(coreV1Api.getApiClient(),
+                        (callGeneratorParams, limit, continueToken) ->
+                                listCall(namespace, selector, callGeneratorParams, limit, continueToken),
+                        LIST_PAGE_SIZE, payloadSink, bulkLoader, restoredState);
+                listerWatcher = payloadListerWatcher;
+                restored = restoredState != null;
+            }
+            // a factory per watch would start a thread pool per watch, and one factory only keeps one informer per type
+            informer = new DefaultSharedIndexInformer<>(V1Secret.class, progress.track(listerWatcher, onRelisted), 0);
+            informer.addEventHandler(eventHandler);
+            lister = new Lister<>(informer.getIndexer());
+        }
+
+        void start() {
+            informerExecutor.execute(informer::run);
+        }
+
+        void stop() {
+            informer.stop();
+        }
+
+        boolean hasSynced() {
+            return informer.hasSynced();
+        }
+
+        boolean hasConfirmedRestoredState() {
+            return !restored || payloadListerWatcher.hasListed() || progress.getEvents() + progress.getBookmarks() > 0;
+        }
+
+        V1Secret get(String namespace, String name) {
+            return lister.namespace(namespace).get(name);
+        }
+
+        List<V1Secret> list() {
+            return informer.getIndexer().list();
+        }
+
+        WatchState getState() {
+            return new WatchState(informer.lastSyncResourceVersion(), list());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.informer.ListerWatcher;
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import io.kubernetes.client.util.CallGeneratorParams;
+import io.kubernetes.client.util.Watch;
+import io.kubernetes.client.util.Watchable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Progress of the watch of an informer. Every event and bookmark the API server sends is progress, so a watch
+ * that sends nothing for a while is considered stalled even if its connection is still open.
+ * <p>
+ * A stalled watch is recovered by closing it, the informer then watches again from the last resourceVersion
+ * it has seen, without listing secrets again.
+ */
+public class WatchProgress {
+
+    private static final String BOOKMARK = "BOOKMARK";
+    private static final String ERROR = "ERROR";
+
+    private volatile long lastProgressNanos = System.nanoTime();
+    private volatile String resourceVersion;
+    private volatile TrackingWatchable current;
+
+    private final AtomicLong lists = new AtomicLong();
+    private final AtomicLong watches = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong bookmarks = new AtomicLong();
+    private final AtomicLong rewatches = new AtomicLong();
+
+    /**
+     * @param onRelisted receives the {@link System#nanoTime()} the list started at, once secrets are listed again
+     *                   after the first list.
+     * @return the lister watcher that reports the progress of its watches to this.
+     */
+    ListerWatcher<V1Secret, V1SecretList> track(ListerWatcher<V1Secret, V1SecretList> delegate, LongConsumer onRelisted) {
+        return new ListerWatcher<V1Secret, V1SecretList>() {
+            @Override
+            public V1SecretList list(CallGeneratorParams params) throws ApiException {
+                long start = System.nanoTime();
+                V1SecretList list = delegate.list(params);
+                if (list.getMetadata() != null) {
+                    resourceVersion = list.getMetadata().getResourceVersion();
+                }
+                lastProgressNanos = System.nanoTime();
+                if (lists.getAndIncrement() > 0) {
+                    onRelisted.accept(start);
+                }
+                return list;
+            }
+
+            @Override
+            public Watchable<V1Secret> watch(CallGeneratorParams params) throws ApiException {
+                TrackingWatchable watch = new TrackingWatchable(delegate.watch(params));
+                current = watch;
+                watches.incrementAndGet();
+                lastProgressNanos = System.nanoTime();
+                return watch;
+            }
+        };
+    }
+
+    /**
+     * Close the watch if it has made no progress within the timeout.
+     * @return true if the watch was stalled and has been closed.
+     */
+    public boolean rewatchIfStalled(Duration timeout) {
+        TrackingWatchable watch = current;
+        if (watch == null || getIdleTime().compareTo(timeout) < 0) {
+            return false;
+        }
+
+        rewatches.incrementAndGet();
+        watch.abandon();
+        return true;
+    }
+
+    /**
+     * @return time since the last event, bookmark, list or watch.
+     */
+    public Duration getIdleTime() {
+        return Duration.ofNanos(System.nanoTime() - lastProgressNanos);
+    }
+
+    /**
+     * @return the last resourceVersion seen by the watch, the watch will resume from it.
+     */
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public boolean isWatching() {
+        return current != null;
+    }
+
+    /**
+     * @return number of lists, including the list served from a restored state.
+     */
+    public long getLists() {
+        return lists.get();
+    }
+
+    public long getWatches() {
+        return watches.get();
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    public long getBookmarks() {
+        return bookmarks.get();
+    }
+
+    /**
+     * @return number of stalled watches that have been closed.
+     */
+    public long getRewatches() {
+        return rewatches.get();
+    }
+
+    private void onResponse(Watch.Response<V1Secret> response) {
+        if (ERROR.equals(response.type)) {
+            return;
+        }
+
+        if (BOOKMARK.equals(response.type)) {
+            bookmarks.incrementAndGet();
+        } else {
+            events.incrementAndGet();
+        }
+        if (response.object != null && response.object.getMetadata() != null) {
+            resourceVersion = response.object.getMetadata().getResourceVersion();
+        }
+        lastProgressNanos = System.nanoTime();
+    }
+
+    private class TrackingWatchable implements Watchable<V1Secret> {
+        private final Watchable<V1Secret> delegate;
+        private volatile boolean abandoned;
+
+        TrackingWatchable(Watchable<V1Secret> delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Close the connection, the informer sees the watch as ended and watches again.
+         */
+        void abandon() {
+            abandoned = true;
+            try {
+                delegate.close();
+            } catch (IOException ignored) {
+                // the informer watches again anyway
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return !abandoned && delegate.hasNext();
+            } catch (RuntimeException e) {
+                // reading from the closed connection fails, end the watch normally
+                if (abandoned) {
+                    return false;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public Watch.Response<V1Secret> next() {
+            Watch.Response<V1Secret> response = delegate.next();
+            onResponse(response);
+            return response;
+        }
+
+        @Override
+        public Iterator<Watch.Response<V1Secret>> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current == this) {
+                current = null;
+            }
+            delegate.close();
+        }
+    }
+}
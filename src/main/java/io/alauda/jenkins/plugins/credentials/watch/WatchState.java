@@ -0,0 +1,33 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.openapi.models.V1Secret;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of an informer that can be persisted, so the informer can resume watching from the resourceVersion
+ * instead of listing all secrets again.
+ */
+public final class WatchState {
+
+    private final String resourceVersion;
+    private final List<V1Secret> secrets;
+
+    /**
+     * @param resourceVersion the resourceVersion the informer has synced to.
+     * @param secrets the {@link SecretSummary}s in the cache of the informer.
+     */
+    public WatchState(String resourceVersion, List<V1Secret> secrets) {
+        this.resourceVersion = resourceVersion;
+        this.secrets = Collections.unmodifiableList(secrets);
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public List<V1Secret> getSecrets() {
+        return secrets;
+    }
+}
@@ -0,0 +1,68 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static io.alauda.jenkins.plugins.credentials.CompiledConfiguration.compile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledConfigurationTest {
+
+    private final CompiledConfiguration base = compile("a,b", "app=jenkins", false, false, false, 2, false);
+
+    @Test
+    public void configuredStringsAreParsedOnce() {
+        CompiledConfiguration config = compile(" a, ,b ,a", "  ", false, false, false, 0, false);
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("a", "b")), config.getGlobalNamespaces());
+        assertNull(config.getLabelSelector());
+        assertEquals(1, config.getWorkerCount());
+        assertNull(compile(null, null, false, false, false, 1, false).getLabelSelector());
+        assertTrue(compile(null, null, false, false, false, 1, false).getGlobalNamespaces().isEmpty());
+    }
+
+    @Test
+    public void sameConfigurationAffectsNothing() {
+        CompiledConfiguration same = compile("a, b", " app=jenkins ", false, false, false, 2, false);
+
+        assertFalse(base.requiresNewWatches(same));
+        assertFalse(base.affectsWorkers(same));
+        assertFalse(base.affectsWatchedNamespaces(same));
+    }
+
+    @Test
+    public void watchedSecretsRequireNewWatches() {
+        assertTrue(base.requiresNewWatches(compile("a,b", "app=other", false, false, false, 2, false)));
+        assertTrue(base.requiresNewWatches(compile("a,b", null, false, false, false, 2, false)));
+        assertTrue(base.requiresNewWatches(compile("a,b", "app=jenkins", false, true, false, 2, false)));
+        assertTrue(base.requiresNewWatches(compile("a,b", "app=jenkins", false, false, true, 2, false)));
+    }
+
+    @Test
+    public void globalNamespacesOnlyAffectWatchedNamespaces() {
+        CompiledConfiguration changed = compile("a,c", "app=jenkins", false, false, false, 2, false);
+
+        assertTrue(base.affectsWatchedNamespaces(changed));
+        assertFalse(base.requiresNewWatches(changed));
+        assertFalse(base.affectsWorkers(changed));
+        assertTrue(base.affectsWatchedNamespaces(compile("a,b", "app=jenkins", true, false, false, 2, false)));
+        // the order of global namespaces doesn't matter
+        assertFalse(base.affectsWatchedNamespaces(compile("b,a", "app=jenkins", false, false, false, 2, false)));
+    }
+
+    @Test
+    public void workersOnlyAffectWorkers() {
+        CompiledConfiguration resized = compile("a,b", "app=jenkins", false, false, false, 4, false);
+        CompiledConfiguration adaptive = compile("a,b", "app=jenkins", false, false, false, 2, true);
+
+        assertTrue(base.affectsWorkers(resized));
+        assertTrue(base.affectsWorkers(adaptive));
+        assertFalse(base.requiresNewWatches(resized));
+        assertFalse(base.affectsWatchedNamespaces(adaptive));
+    }
+}
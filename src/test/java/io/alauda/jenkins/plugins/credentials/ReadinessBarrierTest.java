@@ -0,0 +1,112 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadinessBarrierTest {
+
+    private static final Runnable NO_POLL = () -> {
+    };
+
+    private final ReadinessBarrier barrier = new ReadinessBarrier();
+
+    @Test
+    public void lookupsWaitUntilReady() throws Exception {
+        CompletableFuture<Boolean> lookup = CompletableFuture.supplyAsync(() -> barrier.await(Duration.ofSeconds(10), NO_POLL));
+        Thread.sleep(200);
+        assertFalse(lookup.isDone());
+
+        assertTrue(barrier.markReady());
+        assertTrue(lookup.get(5, TimeUnit.SECONDS));
+        assertFalse(barrier.markReady());
+        assertNotNull(barrier.getTimeToReady());
+        assertEquals(1, barrier.getWaits());
+        assertEquals(0, barrier.getTimeouts());
+    }
+
+    @Test
+    public void pollCanOpenTheBarrier() {
+        AtomicInteger polls = new AtomicInteger();
+
+        assertTrue(barrier.await(Duration.ofSeconds(10), () -> {
+            if (polls.incrementAndGet() == 3) {
+                barrier.markReady();
+            }
+        }));
+        assertEquals(3, polls.get());
+    }
+
+    @Test
+    public void firstTimeoutDegradesTheBarrier() {
+        assertFalse(barrier.await(Duration.ofMillis(100), NO_POLL));
+        assertTrue(barrier.isDegraded());
+        assertEquals(1, barrier.getTimeouts());
+
+        // later lookups don't wait, but still poll so the barrier can open
+        AtomicInteger polls = new AtomicInteger();
+        long start = System.nanoTime();
+        assertTrue(barrier.await(Duration.ofSeconds(10), polls::incrementAndGet));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, polls.get());
+        assertEquals(1, barrier.getWaits());
+
+        barrier.markReady();
+        assertFalse(barrier.isDegraded());
+    }
+
+    @Test
+    public void restoredSnapshotsAreServedRightAway() {
+        barrier.markRestored();
+
+        assertTrue(barrier.await(Duration.ofSeconds(10), NO_POLL));
+        assertEquals(0, barrier.getWaits());
+        assertFalse(barrier.isReady());
+    }
+
+    @Test
+    public void lookupsDontWaitWithoutTimeout() {
+        assertTrue(barrier.await(Duration.ZERO, NO_POLL));
+        assertFalse(barrier.isDegraded());
+        assertEquals(0, barrier.getWaits());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        barrier.await(Duration.ofMillis(10), NO_POLL);
+        barrier.markRestored();
+        barrier.markReady();
+        barrier.markHotReady();
+
+        barrier.reset();
+
+        assertFalse(barrier.isReady());
+        assertFalse(barrier.isHotReady());
+        assertFalse(barrier.isDegraded());
+        assertNull(barrier.getTimeToReady());
+        assertFalse(barrier.await(Duration.ofMillis(50), NO_POLL));
+    }
+
+    @Test
+    public void hotReadinessIsMeasuredFromTheLastHotStart() throws Exception {
+        assertTrue(barrier.markHotReady());
+        assertFalse(barrier.markHotReady());
+
+        Thread.sleep(100);
+        barrier.resetHot(System.nanoTime());
+        assertFalse(barrier.isHotReady());
+        assertTrue(barrier.markHotReady());
+        assertTrue(barrier.getHotTimeToReady().toMillis() < 100);
+        // lookups are not affected by the hot readiness
+        assertFalse(barrier.isReady());
+    }
+}
@@ -0,0 +1,95 @@
+package io.alauda.jenkins.plugins.credentials;
+
+import io.alauda.jenkins.plugins.credentials.convertor.CredentialsConversionException;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SecretDataTest {
+
+    @Test
+    public void keysAreMappedByAnnotations() throws Exception {
+        V1Secret secret = secret("user", "password");
+        secret.getMetadata().putAnnotationsItem("jenkins.io/credentials-keybinding-username", "user");
+
+        SecretData data = SecretData.of(secret);
+
+        assertEquals("user", data.getKeyName("username"));
+        assertTrue(data.contains("username"));
+        assertEquals("alice", data.getNonNullString("username", "missing username"));
+        assertEquals("password", data.getKeyName("password"));
+    }
+
+    @Test
+    public void missingDataIsReportedWithTheMappedKey() {
+        V1Secret secret = secret("username", "password");
+        secret.getMetadata().putAnnotationsItem("jenkins.io/credentials-keybinding-username", "user");
+
+        try {
+            SecretData.of(secret).getNonNullString("username", "missing username");
+            fail();
+        } catch (CredentialsConversionException e) {
+            assertEquals("missing username (mapped to user)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void textIsDecodedAsUtf8() throws Exception {
+        V1Secret secret = secret("username", "password");
+        secret.putDataItem("username", "él".getBytes(StandardCharsets.UTF_8));
+        secret.putDataItem("password", new byte[]{'a', (byte) 0xff, 'b'});
+
+        SecretData data = SecretData.of(secret);
+
+        assertEquals("él", data.getNonNullString("username", "missing username"));
+        // malformed input is replaced like new String(bytes, UTF_8) does
+        assertEquals("a�b", data.getNonNullSecret("password", "missing password").getPlainText());
+    }
+
+    @Test
+    public void identicalSecretsShareTheSameInstance() throws Exception {
+        SecretData first = SecretData.of(secret("username", "password"));
+        SecretData second = SecretData.of(secret("username", "password"));
+
+        assertSame(first.getNonNullSecret("password", "missing password"),
+                second.getNonNullSecret("password", "missing password"));
+        assertEquals(1, first.getCacheKeys().size());
+        assertFalse(first.getOptionalSecret("missing", "missing").isPresent());
+    }
+
+    @Test
+    public void bytesAreConcatenatedUpToTheLimit() throws Exception {
+        SecretData data = SecretData.of(secret("username", "password"));
+        ByteBuffer first = ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer second = ByteBuffer.wrap("cd".getBytes(StandardCharsets.UTF_8));
+
+        assertArrayEquals("abcd".getBytes(StandardCharsets.UTF_8), data.getSecretBytes(4, first, second).getPlainData());
+        // the parts are not consumed
+        assertEquals(2, first.remaining());
+        try {
+            data.getSecretBytes(3, first, second);
+            fail();
+        } catch (CredentialsConversionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("4 bytes"));
+        }
+        assertNull(data.getBytes("missing"));
+    }
+
+    private static V1Secret secret(String usernameKey, String passwordKey) {
+        V1Secret secret = new V1Secret().metadata(new V1ObjectMeta().namespace("ns").name("secret"));
+        secret.putDataItem(usernameKey, "alice".getBytes(StandardCharsets.UTF_8));
+        secret.putDataItem(passwordKey, "s3cr3t".getBytes(StandardCharsets.UTF_8));
+        return secret;
+    }
+}
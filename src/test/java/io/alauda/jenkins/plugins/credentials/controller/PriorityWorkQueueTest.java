@@ -0,0 +1,214 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityWorkQueueTest {
+
+    private static final int HOT = 0;
+    private static final int NORMAL = 1;
+
+    private final Map<String, Integer> priorities = new HashMap<>();
+    private final AtomicInteger drained = new AtomicInteger();
+    private final PriorityWorkQueue<String> queue = new PriorityWorkQueue<>(
+            item -> priorities.getOrDefault(item, NORMAL), NORMAL, drained::incrementAndGet);
+
+    @After
+    public void shutDown() {
+        queue.shutDown();
+    }
+
+    @Test
+    public void itemsAreTakenByPriorityThenInOrder() throws Exception {
+        priorities.put("b", HOT);
+        priorities.put("d", HOT);
+        queue.add("a");
+        queue.add("b");
+        queue.add("c");
+        queue.add("d");
+
+        assertEquals("b", queue.get());
+        assertEquals("d", queue.get());
+        assertEquals("a", queue.get());
+        assertEquals("c", queue.get());
+    }
+
+    @Test
+    public void addingQueuedItemRaisesItsPriority() throws Exception {
+        queue.add("a");
+        queue.add("b");
+
+        priorities.put("b", HOT);
+        queue.add("b");
+        // a lower priority doesn't move the item back
+        priorities.put("a", NORMAL + 1);
+        queue.add("a");
+
+        assertEquals(2, queue.length());
+        assertEquals(1, queue.getHotPending());
+        assertEquals("b", queue.get());
+        assertEquals("a", queue.get());
+    }
+
+    @Test
+    public void hotDrainedRunsWhenTheLastHotItemIsDone() throws Exception {
+        priorities.put("x", HOT);
+        priorities.put("y", HOT);
+        queue.add("x");
+        queue.add("y");
+        queue.add("n");
+        assertEquals(2, queue.getHotPending());
+
+        String first = queue.get();
+        // items being processed are still pending
+        assertEquals(2, queue.getHotPending());
+        queue.done(first);
+        assertEquals(1, queue.getHotPending());
+        assertEquals(0, drained.get());
+
+        String second = queue.get();
+        queue.done(second);
+        assertEquals(0, queue.getHotPending());
+        assertEquals(1, drained.get());
+
+        queue.done(queue.get());
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    public void hotItemAddedWhileProcessedIsPendingUntilDoneAgain() throws Exception {
+        priorities.put("x", HOT);
+        queue.add("x");
+
+        assertEquals("x", queue.get());
+        queue.add("x");
+        assertEquals(2, queue.getHotPending());
+        queue.done("x");
+        assertEquals(1, queue.getHotPending());
+        assertEquals(0, drained.get());
+
+        assertEquals("x", queue.get());
+        queue.done("x");
+        assertEquals(0, queue.getHotPending());
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    public void delayedItemsAreCountedInLength() throws Exception {
+        queue.add("a");
+        queue.addAfter("b", Duration.ofMinutes(1));
+        // delayed and ready at the same time
+        queue.addAfter("a", Duration.ofMinutes(1));
+
+        assertEquals(2, queue.length());
+        assertEquals(1, queue.getReady());
+    }
+
+    @Test
+    public void delayedAddsKeepTheEarliestTime() throws Exception {
+        queue.addAfter("a", Duration.ofMinutes(1));
+        queue.addAfter("a", Duration.ofMillis(10));
+
+        assertEquals("a", queue.get());
+    }
+
+    @Test
+    public void debouncedAddsPushTheItemBack() throws Exception {
+        Duration window = Duration.ofMillis(300);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            queue.addDebounced("a", window, Duration.ofMinutes(1));
+            Thread.sleep(150);
+        }
+
+        // the first add alone would have made the item ready by now
+        if (System.nanoTime() - start < 2 * window.toNanos()) {
+            assertEquals(0, queue.getReady());
+        }
+        assertEquals(1, queue.length());
+        assertEquals("a", queue.get());
+    }
+
+    @Test
+    public void debouncedAddsWaitAtMostTheMaxWait() throws Exception {
+        Duration window = Duration.ofMillis(200);
+        Duration maxWait = Duration.ofMillis(400);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (queue.getReady() == 0) {
+            assertTrue("item kept being pushed back beyond the max wait", System.nanoTime() < deadline);
+            queue.addDebounced("a", window, maxWait);
+            Thread.sleep(50);
+        }
+
+        assertEquals("a", queue.get());
+    }
+
+    @Test
+    public void priorityRaisedWhileProcessedAppliesWhenDone() throws Exception {
+        queue.add("a");
+        assertEquals("a", queue.get());
+        queue.add("b");
+
+        priorities.put("a", HOT);
+        queue.add("a");
+        assertEquals(1, queue.getHotPending());
+        queue.done("a");
+
+        // queued again with the raised priority, ahead of the item added before
+        assertEquals("a", queue.get());
+        assertEquals("b", queue.get());
+        queue.done("a");
+        assertEquals(0, queue.getHotPending());
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    public void hotItemReadyAndDelayedIsPendingUntilTheDelayedAddIsDone() throws Exception {
+        priorities.put("x", HOT);
+        queue.add("x");
+        queue.addAfter("x", Duration.ofMillis(200));
+        assertEquals(1, queue.getHotPending());
+
+        // taking the ready item doesn't untrack it, the delayed add still waits
+        assertEquals("x", queue.get());
+        queue.done("x");
+        assertEquals(1, queue.getHotPending());
+        assertEquals(0, drained.get());
+
+        assertEquals("x", queue.get());
+        queue.done("x");
+        assertEquals(0, queue.getHotPending());
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    public void hotDrainedWaitsForWaitingHotItems() throws Exception {
+        priorities.put("x", HOT);
+        priorities.put("y", HOT);
+        queue.add("x");
+        queue.addAfter("y", Duration.ofMillis(200));
+        assertEquals(2, queue.getHotPending());
+
+        queue.done(queue.get());
+        assertEquals(1, queue.getHotPending());
+        assertEquals(0, drained.get());
+
+        assertEquals("y", queue.get());
+        queue.done("y");
+        assertEquals(0, queue.getHotPending());
+        assertEquals(1, drained.get());
+
+        // normal items never drain the hot items
+        queue.add("n");
+        queue.done(queue.get());
+        assertEquals(1, drained.get());
+    }
+}
@@ -0,0 +1,109 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import io.kubernetes.client.extended.controller.reconciler.Request;
+import io.kubernetes.client.extended.controller.reconciler.Result;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScalingControllerTest {
+
+    private static final long RECONCILE_MILLIS = 20;
+
+    private final AtomicInteger reconciled = new AtomicInteger();
+    private final TrackingWorkQueue<Request> workQueue = new TrackingWorkQueue<>(
+            new PriorityWorkQueue<>(request -> 0, 0, () -> {
+            }));
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    private ScalingController controller;
+
+    @After
+    public void shutDown() throws Exception {
+        controller.shutdown();
+        assertTrue(controller.awaitTermination(Duration.ofSeconds(5)));
+        runner.shutdownNow();
+    }
+
+    @Test
+    public void idleWorkersRetireWhenScaledDown() throws Exception {
+        start(4, false);
+        awaitTrue(() -> controller.getActiveWorkers() == 4);
+
+        // all workers are waiting for requests
+        controller.setWorkers(1, false);
+        awaitTrue(() -> controller.getActiveWorkers() == 1);
+
+        // the remaining worker still takes requests
+        add(3);
+        awaitTrue(() -> reconciled.get() == 3);
+        assertEquals(1, controller.getActiveWorkers());
+    }
+
+    @Test
+    public void idleWorkersAreAddedWhenScaledUp() throws Exception {
+        start(1, false);
+        awaitTrue(() -> controller.getActiveWorkers() == 1);
+
+        controller.setWorkers(3, false);
+        awaitTrue(() -> controller.getActiveWorkers() == 3);
+    }
+
+    @Test
+    public void adaptiveWorkersFollowTheBacklog() throws Exception {
+        start(4, true);
+        awaitTrue(() -> controller.getActiveWorkers() == 1);
+
+        // 200 requests take 4 s with one worker, more than the scale interval
+        add(200);
+        awaitTrue(() -> !controller.getReconcileLatency().isZero());
+        controller.adapt();
+        assertEquals(4, controller.getActiveWorkers());
+        assertTrue(controller.getReconcileLatency().toMillis() >= RECONCILE_MILLIS);
+
+        awaitTrue(() -> reconciled.get() == 200);
+        // shrinks one worker at a time while the backlog is small, idle workers retire right away
+        controller.adapt();
+        awaitTrue(() -> controller.getActiveWorkers() <= 3);
+        awaitTrue(() -> {
+            controller.adapt();
+            return controller.getActiveWorkers() == 1;
+        });
+    }
+
+    private void start(int workerCount, boolean adaptive) {
+        controller = new ScalingController("test", request -> {
+            try {
+                Thread.sleep(RECONCILE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            reconciled.incrementAndGet();
+            return new Result(false);
+        }, workQueue, workerCount, adaptive, () -> {
+        }, 10);
+        runner.submit(controller);
+    }
+
+    private void add(int count) {
+        for (int i = 0; i < count; i++) {
+            workQueue.add(new Request("ns", "secret-" + i));
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
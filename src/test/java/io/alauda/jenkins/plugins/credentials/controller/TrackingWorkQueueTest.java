@@ -0,0 +1,89 @@
+package io.alauda.jenkins.plugins.credentials.controller;
+
+import io.kubernetes.client.extended.workqueue.WorkQueue;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingWorkQueueTest {
+
+    private final TrackingWorkQueue<String> queue = new TrackingWorkQueue<>(new PriorityWorkQueue<>(item -> 0, 0, () -> {
+    }));
+
+    @After
+    public void shutDown() {
+        queue.shutDown();
+    }
+
+    @Test
+    public void itemsWaitUntilTaken() throws Exception {
+        queue.add("a");
+        queue.add("a");
+        long added = System.nanoTime();
+        Thread.sleep(50);
+
+        assertEquals(1, queue.getWaiting());
+        assertEquals(1, queue.getCoalesced());
+        assertTrue(queue.getOldestAge().toMillis() >= 50);
+        assertFalse(queue.isDrainedUpTo(added));
+
+        assertEquals("a", queue.get());
+        assertEquals(0, queue.getWaiting());
+        // taken but not done
+        assertFalse(queue.isDrainedUpTo(System.nanoTime()));
+        queue.done("a");
+        assertTrue(queue.isDrainedUpTo(System.nanoTime()));
+    }
+
+    @Test
+    public void debouncedItemsWaitSinceTheFirstAdd() throws Exception {
+        WorkQueue<String> debounced = queue.debounced(Duration.ofMillis(100), Duration.ofMinutes(1));
+        long before = System.nanoTime();
+        debounced.add("a");
+        Thread.sleep(50);
+        debounced.add("a");
+
+        assertEquals(1, queue.getWaiting());
+        assertEquals("a", queue.get());
+        assertTrue(System.nanoTime() - before >= Duration.ofMillis(150).toNanos());
+        queue.done("a");
+        assertTrue(queue.isDrainedUpTo(System.nanoTime()));
+    }
+
+    @Test
+    public void takenItemsWithDelayedAddsKeepWaitingSinceTheFirstAdd() throws Exception {
+        queue.add("a");
+        queue.addAfter("a", Duration.ofMillis(200));
+        long added = System.nanoTime();
+
+        // the item is ready and delayed at the same time, the delayed add is still waiting
+        assertEquals("a", queue.get());
+        queue.done("a");
+        assertEquals(1, queue.getWaiting());
+        assertFalse(queue.isDrainedUpTo(added));
+
+        assertEquals("a", queue.get());
+        assertEquals(0, queue.getWaiting());
+        queue.done("a");
+        assertTrue(queue.isDrainedUpTo(System.nanoTime()));
+    }
+
+    @Test
+    public void takenItemsAddedAgainWhileProcessedKeepWaiting() throws Exception {
+        queue.add("a");
+        queue.addAfter("a", Duration.ofMillis(50));
+        assertEquals("a", queue.get());
+        // the delayed add fires while the item is processed
+        Thread.sleep(100);
+
+        assertEquals(1, queue.getWaiting());
+        queue.done("a");
+        assertEquals("a", queue.get());
+        assertEquals(0, queue.getWaiting());
+    }
+}
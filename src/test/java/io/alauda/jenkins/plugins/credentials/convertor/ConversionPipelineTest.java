@@ -0,0 +1,109 @@
+package io.alauda.jenkins.plugins.credentials.convertor;
+
+import com.cloudbees.plugins.credentials.common.IdCredentials;
+import io.alauda.jenkins.plugins.credentials.SecretUtils;
+import io.alauda.jenkins.plugins.credentials.metadata.MetadataProvider;
+import io.alauda.jenkins.plugins.credentials.rule.KubernetesSecretRule;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ConversionPipelineTest {
+
+    private final TestConverter basicAuth = new TestConverter("kubernetes.io/basic-auth", "usernamePassword");
+    private final TestConverter opaque = new TestConverter("Opaque", "secretText");
+    private final TestConverter otherOpaque = new TestConverter("Opaque", "secretText", "token");
+    private final ConversionPipeline pipeline = new ConversionPipeline(new KubernetesSecretRule[0],
+            new SecretToCredentialConverter[]{basicAuth, opaque, otherOpaque}, new MetadataProvider[0]);
+
+    @Test
+    public void secretsWithoutLabelAreRoutedByType() {
+        ConversionPipeline.Route route = pipeline.route(secret("kubernetes.io/basic-auth", null));
+
+        assertSame(basicAuth, route.getConverter());
+        assertEquals("type:kubernetes.io/basic-auth", route.getName());
+        assertSame(opaque, pipeline.route(secret("Opaque", null)).getConverter());
+    }
+
+    @Test
+    public void labelWinsOverType() {
+        ConversionPipeline.Route route = pipeline.route(secret("Opaque", "usernamePassword"));
+
+        assertSame(basicAuth, route.getConverter());
+        assertEquals("label:usernamePassword", route.getName());
+    }
+
+    @Test
+    public void firstConverterHandlingTheLabelWins() {
+        assertSame(opaque, pipeline.route(secret("Opaque", "secretText")).getConverter());
+        assertSame(otherOpaque, pipeline.route(secret("Opaque", "token")).getConverter());
+    }
+
+    @Test
+    public void unknownLabelsFallBackToType() {
+        ConversionPipeline.Route route = pipeline.route(secret("kubernetes.io/basic-auth", "unknown"));
+
+        assertSame(basicAuth, route.getConverter());
+        assertEquals("type:kubernetes.io/basic-auth", route.getName());
+    }
+
+    @Test
+    public void secretsNoConverterHandlesAreNotRouted() {
+        assertNull(pipeline.route(secret("kubernetes.io/tls", null)));
+        assertNull(pipeline.route(secret("kubernetes.io/tls", "unknown")));
+        assertNull(pipeline.lookup("kubernetes.io/tls"));
+    }
+
+    @Test
+    public void credentialsTypesAreTheHandledLabelValues() {
+        assertEquals(new HashSet<>(Arrays.asList("usernamePassword", "secretText", "token")),
+                pipeline.getCredentialsTypes());
+    }
+
+    private static V1Secret secret(String type, String credentialsType) {
+        V1ObjectMeta metadata = new V1ObjectMeta().namespace("ns").name("secret");
+        if (credentialsType != null) {
+            metadata.putLabelsItem(SecretUtils.JENKINS_IO_CREDENTIALS_TYPE_LABEL, credentialsType);
+        }
+        return new V1Secret().type(type).metadata(metadata);
+    }
+
+    private static class TestConverter extends SecretToCredentialConverter {
+        private final String type;
+        private final Collection<String> credentialsTypes;
+
+        TestConverter(String type, String... credentialsTypes) {
+            this.type = type;
+            this.credentialsTypes = Arrays.asList(credentialsTypes);
+        }
+
+        @Override
+        public boolean canConvert(String type) {
+            return this.type.equals(type);
+        }
+
+        @Override
+        public IdCredentials convert(V1Secret secret) {
+            return null;
+        }
+
+        @Override
+        public Collection<String> getSecretTypes() {
+            return Collections.singleton(type);
+        }
+
+        @Override
+        public Collection<String> getCredentialsTypes() {
+            return credentialsTypes;
+        }
+    }
+}
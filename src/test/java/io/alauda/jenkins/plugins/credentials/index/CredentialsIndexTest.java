@@ -0,0 +1,110 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialsIndexTest {
+
+    @Test
+    public void stagedChangesArePublishedByFlush() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.stage("ns1-a", TestCredentials.of("ns1", "a"));
+        index.stage("ns1-b", TestCredentials.of("ns1", "b"));
+
+        assertEquals(0, index.getSnapshot().size());
+
+        index.flush();
+        assertEquals(2, index.getSnapshot().size());
+        assertEquals(1, index.getPublishedBatches());
+        assertEquals(2, index.getPublishedChanges());
+    }
+
+    @Test
+    public void stageRemovalTellsWhetherCredentialsExist() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("ns1-a", TestCredentials.of("ns1", "a"));
+
+        assertTrue(index.stageRemoval("ns1-a"));
+        assertFalse(index.stageRemoval("ns1-missing"));
+        index.flush();
+        assertEquals(0, index.getSnapshot().size());
+    }
+
+    @Test
+    public void replaceRemovesCredentialsThatAreNotRetained() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("ns1-a", TestCredentials.of("ns1", "a"));
+        index.put("ns1-b", TestCredentials.of("ns1", "b"));
+        index.put("ns1-c", TestCredentials.of("ns1", "c"));
+
+        CredentialsWithMetadata d = TestCredentials.of("ns1", "d");
+        Map<String, CredentialsWithMetadata> replacement = new HashMap<>();
+        replacement.put("ns1-d", d);
+
+        int removed = index.replace(replacement, "ns1-b"::equals);
+
+        CredentialsSnapshot snapshot = index.getSnapshot();
+        assertEquals(2, removed);
+        assertEquals(2, snapshot.size());
+        assertNull(snapshot.get("ns1-a"));
+        assertTrue(snapshot.containsKey("ns1-b"));
+        assertSame(d, snapshot.get("ns1-d"));
+    }
+
+    @Test
+    public void replaceAppliesStagedChangesFirst() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.stage("ns1-a", TestCredentials.of("ns1", "a"));
+
+        CredentialsWithMetadata a = TestCredentials.other("ns1", "a");
+        index.replace(Collections.singletonMap("ns1-a", a), id -> false);
+
+        // the staged change is older than the replacement, it must not win
+        assertSame(a, index.getSnapshot().get("ns1-a"));
+        assertEquals(1, index.getSnapshot().size());
+    }
+
+    @Test
+    public void replaceWithNothingToChangeKeepsTheSnapshot() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("ns1-a", TestCredentials.of("ns1", "a"));
+        CredentialsSnapshot snapshot = index.getSnapshot();
+
+        assertEquals(0, index.replace(Collections.emptyMap(), id -> true));
+        assertSame(snapshot, index.getSnapshot());
+    }
+
+    @Test
+    public void globalNamespacesArePartitioned() {
+        CredentialsIndex index = new CredentialsIndex();
+        index.put("global-a", TestCredentials.of("global", "a"));
+        index.put("ns1-b", TestCredentials.of("ns1", "b"));
+
+        index.setGlobalNamespaces(Collections.singleton("global"));
+
+        assertEquals(1, index.getSnapshot().global(TestCredentials.class).size());
+        assertEquals("global-a", index.getSnapshot().global(TestCredentials.class).get(0).getCredentials().getId());
+    }
+
+    @Test
+    public void changesQueuedWhileGlobalNamespacesChangeArePublished() {
+        CredentialsIndex index = new CredentialsIndex();
+        // a writer that fails to take the lock leaves its change queued for the lock holder
+        index.stage("global-a", TestCredentials.of("global", "a"));
+
+        index.setGlobalNamespaces(Collections.singleton("global"));
+
+        assertEquals(1, index.getSnapshot().size());
+        assertEquals(1, index.getSnapshot().global(TestCredentials.class).size());
+    }
+}
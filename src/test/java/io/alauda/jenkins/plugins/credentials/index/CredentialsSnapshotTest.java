@@ -0,0 +1,203 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialsSnapshotTest {
+
+    private CredentialsSnapshot empty;
+
+    @Before
+    public void setUp() {
+        CredentialsTypes types = new CredentialsTypes();
+        types.register(TestCredentials.class);
+        types.register(TestCredentials.Other.class);
+        empty = CredentialsSnapshot.empty(types);
+    }
+
+    @Test
+    public void applyIndexesByIdNamespaceAndType() {
+        CredentialsWithMetadata a = TestCredentials.of("ns1", "a");
+        CredentialsWithMetadata b = TestCredentials.other("ns2", "b");
+
+        CredentialsSnapshot snapshot = empty.apply(Arrays.asList(put(a), put(b)));
+
+        assertEquals(2, snapshot.size());
+        assertSame(a, snapshot.get("ns1-a"));
+        assertEquals(2, snapshot.all(TestCredentials.class).size());
+        assertEquals(Collections.singletonList(b), snapshot.all(TestCredentials.Other.class));
+        assertEquals(Collections.singletonList(a), snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.class));
+        assertTrue(snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.Other.class).isEmpty());
+        assertEquals(1, snapshot.getGeneration());
+    }
+
+    @Test
+    public void applyReplacesAndRemoves() {
+        CredentialsSnapshot snapshot = empty.apply(Arrays.asList(put(TestCredentials.of("ns1", "a")), put(TestCredentials.of("ns1", "b"))));
+
+        // the same ID now converts to another class
+        CredentialsWithMetadata replaced = TestCredentials.other("ns1", "a");
+        CredentialsSnapshot next = snapshot.apply(Arrays.asList(put(replaced), remove("ns1-b")));
+
+        assertEquals(1, next.size());
+        assertSame(replaced, next.get("ns1-a"));
+        assertNull(next.get("ns1-b"));
+        assertEquals(Collections.singletonList(replaced), next.inNamespaces(Collections.singleton("ns1"), TestCredentials.class));
+        assertEquals(Collections.singletonList(replaced), next.all(TestCredentials.Other.class));
+
+        // the previous snapshot is not affected
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.all(TestCredentials.Other.class).isEmpty());
+    }
+
+    @Test
+    public void changesAreAppliedInOrder() {
+        CredentialsWithMetadata a = TestCredentials.of("ns1", "a");
+
+        CredentialsSnapshot snapshot = empty.apply(Arrays.asList(put(a), remove("ns1-a"), put(a)));
+
+        assertSame(a, snapshot.get("ns1-a"));
+        assertEquals(1, snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.class).size());
+    }
+
+    @Test
+    public void unchangedSnapshotIsReturnedAsIs() {
+        CredentialsWithMetadata a = TestCredentials.of("ns1", "a");
+        CredentialsSnapshot snapshot = empty.apply(Collections.singletonList(put(a)));
+
+        assertSame(snapshot, snapshot.apply(Arrays.asList(put(a), remove("ns1-missing"))));
+    }
+
+    @Test
+    public void globalPartitionFollowsChanges() {
+        CredentialsSnapshot snapshot = empty.withGlobalNamespaces(new HashSet<>(Collections.singletonList("global")))
+                .apply(Arrays.asList(put(TestCredentials.of("global", "a")), put(TestCredentials.of("ns1", "b"))));
+
+        assertEquals(1, snapshot.global(TestCredentials.class).size());
+
+        CredentialsSnapshot next = snapshot.apply(Arrays.asList(remove("global-a"), put(TestCredentials.other("global", "c"))));
+        assertEquals(Collections.singletonList(next.get("global-c")), next.global(TestCredentials.class));
+
+        // rebuilding the partition gives the same result as the incremental updates
+        CredentialsSnapshot rebuilt = next.withGlobalNamespaces(Collections.emptySet())
+                .withGlobalNamespaces(new HashSet<>(Collections.singletonList("global")));
+        assertEquals(next.global(TestCredentials.class), rebuilt.global(TestCredentials.class));
+    }
+
+    @Test
+    public void globalNamespacesChangeRebuildsPartition() {
+        CredentialsSnapshot snapshot = empty.apply(Arrays.asList(put(TestCredentials.of("ns1", "a")), put(TestCredentials.of("ns2", "b"))));
+        assertTrue(snapshot.global(TestCredentials.class).isEmpty());
+
+        CredentialsSnapshot next = snapshot.withGlobalNamespaces(new HashSet<>(Arrays.asList("ns1", "ns2")));
+        assertEquals(2, next.global(TestCredentials.class).size());
+        assertEquals(snapshot.getGeneration() + 1, next.getGeneration());
+        assertSame(next, next.withGlobalNamespaces(new HashSet<>(Arrays.asList("ns2", "ns1"))));
+        assertFalse(next.global(TestCredentials.Other.class).iterator().hasNext());
+    }
+
+    @Test
+    public void manyWritesKeepIndexesConsistent() {
+        CredentialsSnapshot snapshot = empty;
+        for (int i = 0; i < 2000; i++) {
+            snapshot = snapshot.apply(Collections.singletonList(put(TestCredentials.of("ns" + (i % 10), "s" + i))));
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            snapshot = snapshot.apply(Collections.singletonList(remove("ns" + (i % 10) + "-s" + i)));
+        }
+
+        assertEquals(1000, snapshot.size());
+        assertEquals(1000, snapshot.all(TestCredentials.class).size());
+        assertEquals(200, snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.class).size());
+        assertTrue(snapshot.inNamespaces(Collections.singleton("ns0"), TestCredentials.class).isEmpty());
+    }
+
+    @Test
+    public void lookupsOnlyVisitTheRequestedNamespaces() {
+        CredentialsWithMetadata a = TestCredentials.of("ns1", "a");
+        CredentialsWithMetadata b = TestCredentials.of("ns2", "b");
+        CredentialsWithMetadata c = TestCredentials.of("ns3", "c");
+        CredentialsSnapshot snapshot = empty.apply(Arrays.asList(put(a), put(b), put(c)));
+
+        assertEquals(new HashSet<>(Arrays.asList(a, c)),
+                new HashSet<>(snapshot.inNamespaces(Arrays.asList("ns1", "ns3"), TestCredentials.class)));
+        assertTrue(snapshot.inNamespaces(Collections.singleton("missing"), TestCredentials.class).isEmpty());
+        assertTrue(snapshot.inNamespaces(Collections.emptyList(), TestCredentials.class).isEmpty());
+    }
+
+    @Test
+    public void credentialsMovedToAnotherNamespaceLeaveTheirOldPartition() {
+        CredentialsSnapshot snapshot = empty.apply(Collections.singletonList(put(TestCredentials.withId("ns1", "shared-id"))));
+
+        CredentialsWithMetadata moved = TestCredentials.withId("ns2", "shared-id");
+        CredentialsSnapshot next = snapshot.apply(Collections.singletonList(put(moved)));
+
+        assertTrue(next.inNamespaces(Collections.singleton("ns1"), TestCredentials.class).isEmpty());
+        assertEquals(Collections.singletonList(moved), next.inNamespaces(Collections.singleton("ns2"), TestCredentials.class));
+        assertEquals(1, snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.class).size());
+    }
+
+    @Test
+    public void credentialsWithoutNamespaceAreNotPartitioned() {
+        CredentialsWithMetadata a = TestCredentials.withId(null, "a");
+        CredentialsSnapshot snapshot = empty.apply(Collections.singletonList(put(a)));
+
+        assertEquals(Collections.singletonList(a), snapshot.all(TestCredentials.class));
+        assertTrue(snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.class).isEmpty());
+
+        assertTrue(snapshot.apply(Collections.singletonList(remove("a"))).all(TestCredentials.class).isEmpty());
+    }
+
+    @Test
+    public void globalCredentialsAreMergedAfterScopedOnes() {
+        CredentialsWithMetadata globalA = TestCredentials.withId("global", "a");
+        CredentialsWithMetadata globalB = TestCredentials.withId("global", "b");
+        CredentialsSnapshot snapshot = empty.withGlobalNamespaces(Collections.singleton("global"))
+                .apply(Arrays.asList(put(globalA), put(globalB)));
+
+        // credentials within scopes take precedence over global credentials of the same ID
+        CredentialsWithMetadata scopedA = TestCredentials.withId("ns1", "a");
+        Map<String, CredentialsWithMetadata> merged = new LinkedHashMap<>();
+        merged.put("a", scopedA);
+        snapshot.mergeGlobal(TestCredentials.class, merged);
+
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<>(merged.keySet()));
+        assertSame(scopedA, merged.get("a"));
+        assertSame(globalB, merged.get("b"));
+    }
+
+    @Test
+    public void globalMergeOnlyAddsTheRequestedType() {
+        CredentialsWithMetadata other = TestCredentials.other("global", "a");
+        CredentialsSnapshot snapshot = empty.withGlobalNamespaces(Collections.singleton("global"))
+                .apply(Arrays.asList(put(TestCredentials.of("global", "b")), put(other), put(TestCredentials.of("ns1", "c"))));
+
+        Map<String, CredentialsWithMetadata> merged = new LinkedHashMap<>();
+        snapshot.mergeGlobal(TestCredentials.Other.class, merged);
+
+        assertEquals(Collections.singletonMap("global-a", other), merged);
+    }
+
+    static Map.Entry<String, CredentialsWithMetadata> put(CredentialsWithMetadata credentialsWithMetadata) {
+        return new AbstractMap.SimpleImmutableEntry<>(credentialsWithMetadata.getCredentials().getId(), credentialsWithMetadata);
+    }
+
+    static Map.Entry<String, CredentialsWithMetadata> remove(String id) {
+        return new AbstractMap.SimpleImmutableEntry<>(id, null);
+    }
+}
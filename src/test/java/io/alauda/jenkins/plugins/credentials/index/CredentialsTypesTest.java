@@ -0,0 +1,57 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import com.cloudbees.plugins.credentials.common.IdCredentials;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CredentialsTypesTest {
+
+    @Test
+    public void typesResolveToTheAssignableConcreteClasses() {
+        CredentialsTypes types = new CredentialsTypes();
+        types.register(TestCredentials.class);
+        types.register(TestCredentials.Other.class);
+
+        assertEquals(new HashSet<>(Arrays.asList(TestCredentials.class, TestCredentials.Other.class)), types.resolve(IdCredentials.class));
+        assertEquals(Collections.singleton(TestCredentials.Other.class), types.resolve(TestCredentials.Other.class));
+        assertTrue(types.resolve(Runnable.class).isEmpty());
+    }
+
+    @Test
+    public void classesRegisteredLaterAreAddedToResolvedTypes() {
+        CredentialsTypes types = new CredentialsTypes();
+        types.register(TestCredentials.class);
+        assertEquals(Collections.singleton(TestCredentials.class), types.resolve(StandardCredentials.class));
+        assertTrue(types.resolve(TestCredentials.Other.class).isEmpty());
+
+        types.register(TestCredentials.Other.class);
+
+        assertEquals(new HashSet<>(Arrays.asList(TestCredentials.class, TestCredentials.Other.class)), types.resolve(StandardCredentials.class));
+        assertEquals(Collections.singleton(TestCredentials.Other.class), types.resolve(TestCredentials.Other.class));
+    }
+
+    @Test
+    public void lookupsByTypeOnlyVisitMatchingBuckets() {
+        CredentialsIndex index = new CredentialsIndex();
+        CredentialsWithMetadata a = TestCredentials.of("ns1", "a");
+        CredentialsWithMetadata b = TestCredentials.other("ns1", "b");
+        index.putAll(Collections.singletonMap("ns1-a", a));
+        // the class of b is only seen after the lookups by type have been resolved once
+        assertEquals(1, index.getSnapshot().all(IdCredentials.class).size());
+        index.put("ns1-b", b);
+
+        CredentialsSnapshot snapshot = index.getSnapshot();
+        assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(snapshot.all(IdCredentials.class)));
+        assertEquals(Collections.singletonList(b), snapshot.all(TestCredentials.Other.class));
+        assertEquals(Collections.singletonList(b), snapshot.inNamespaces(Collections.singleton("ns1"), TestCredentials.Other.class));
+        assertTrue(snapshot.all(Runnable.class).isEmpty());
+    }
+}
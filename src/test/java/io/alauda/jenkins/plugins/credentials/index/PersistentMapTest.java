@@ -0,0 +1,115 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentMapTest {
+
+    @Test
+    public void putAndRemove() {
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty().plus("a", "1").plus("b", "2");
+
+        assertEquals(2, map.size());
+        assertEquals("1", map.get("a"));
+        assertEquals("2", map.get("b"));
+        assertNull(map.get("c"));
+
+        PersistentMap<String, String> removed = map.minus("a");
+        assertEquals(1, removed.size());
+        assertFalse(removed.containsKey("a"));
+        assertTrue(removed.minus("b").isEmpty());
+    }
+
+    @Test
+    public void derivedMapsDontChangeTheOriginal() {
+        PersistentMap<String, String> original = PersistentMap.<String, String>empty().plus("a", "1");
+
+        PersistentMap<String, String> replaced = original.plus("a", "2");
+        PersistentMap<String, String> removed = original.minus("a");
+
+        assertEquals("1", original.get("a"));
+        assertEquals("2", replaced.get("a"));
+        assertEquals(1, replaced.size());
+        assertFalse(removed.containsKey("a"));
+        assertEquals(1, original.size());
+    }
+
+    @Test
+    public void unchangedMapIsReturnedAsIs() {
+        String value = "1";
+        PersistentMap<String, String> map = PersistentMap.<String, String>empty().plus("a", value);
+
+        assertSame(map, map.plus("a", value));
+        assertSame(map, map.minus("b"));
+    }
+
+    @Test
+    public void keysWithTheSameHash() {
+        PersistentMap<CollidingKey, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 10; i++) {
+            map = map.plus(new CollidingKey(i), i);
+        }
+
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), map.get(new CollidingKey(i)));
+        }
+
+        for (int i = 0; i < 9; i++) {
+            map = map.minus(new CollidingKey(i));
+        }
+        assertEquals(1, map.size());
+        assertEquals(Integer.valueOf(9), map.get(new CollidingKey(9)));
+        assertTrue(map.minus(new CollidingKey(9)).isEmpty());
+    }
+
+    @Test
+    public void behavesLikeHashMap() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    private static final class CollidingKey {
+        private final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CollidingKey && ((CollidingKey) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ResultCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void resultsAreCachedByTypeScopeAndGeneration() {
+        ResultCache cache = new ResultCache(16);
+
+        List<String> result = cache.get(String.class, null, false, 1, loader("a"));
+        assertSame(result, cache.get(String.class, null, false, 1, loader("b")));
+        assertEquals(1, loads.get());
+
+        assertEquals(Collections.singletonList("c"), cache.get(Integer.class, null, false, 1, loader("c")));
+        assertEquals(Collections.singletonList("d"), cache.get(String.class, null, true, 1, loader("d")));
+        // a new generation of credentials never hits results of the old one
+        assertEquals(Collections.singletonList("e"), cache.get(String.class, null, false, 2, loader("e")));
+        assertEquals(4, loads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void invalidateDropsAllResults() {
+        ResultCache cache = new ResultCache(16);
+        cache.get(String.class, null, false, 1, loader("a"));
+
+        cache.invalidate();
+
+        assertEquals(0, cache.getSize());
+        assertEquals(Collections.singletonList("b"), cache.get(String.class, null, false, 1, loader("b")));
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void resultLoadedWhileInvalidatedIsNotServedAgain() {
+        ResultCache cache = new ResultCache(16);
+
+        // the scopes change while the result is being computed
+        cache.get(String.class, null, false, 1, () -> {
+            cache.invalidate();
+            return Collections.singletonList("stale");
+        });
+
+        assertEquals(Collections.singletonList("fresh"), cache.get(String.class, null, false, 1, loader("fresh")));
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() {
+        ResultCache cache = new ResultCache(2);
+        cache.get(String.class, null, false, 1, loader("a"));
+        cache.get(Integer.class, null, false, 1, loader("b"));
+        // touch the first entry, so the second one is the eldest
+        cache.get(String.class, null, false, 1, loader("a"));
+
+        cache.get(Long.class, null, false, 1, loader("c"));
+
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(Collections.singletonList("a"), cache.get(String.class, null, false, 1, loader("x")));
+        assertEquals(Collections.singletonList("y"), cache.get(Integer.class, null, false, 1, loader("y")));
+    }
+
+    @Test
+    public void cacheOfSizeZeroAlwaysLoads() {
+        ResultCache cache = new ResultCache(0);
+
+        cache.get(String.class, null, false, 1, loader("a"));
+        cache.get(String.class, null, false, 1, loader("a"));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C> Supplier<List<C>> loader(String value) {
+        return () -> {
+            loads.incrementAndGet();
+            return (List<C>) Collections.singletonList(value);
+        };
+    }
+}
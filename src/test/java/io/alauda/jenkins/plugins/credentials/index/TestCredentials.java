@@ -0,0 +1,47 @@
+package io.alauda.jenkins.plugins.credentials.index;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.impl.BaseStandardCredentials;
+import io.alauda.jenkins.plugins.credentials.metadata.CredentialsWithMetadata;
+import io.alauda.jenkins.plugins.credentials.metadata.NamespaceProvider;
+
+/**
+ * Credentials of two unrelated concrete classes, so the tests don't need converters or a Jenkins instance.
+ */
+class TestCredentials extends BaseStandardCredentials {
+
+    TestCredentials(String id) {
+        super(CredentialsScope.GLOBAL, id, null);
+    }
+
+    static class Other extends TestCredentials {
+        Other(String id) {
+            super(id);
+        }
+    }
+
+    static CredentialsWithMetadata<TestCredentials> of(String namespace, String name) {
+        return withMetadata(namespace, new TestCredentials(namespace + "-" + name));
+    }
+
+    /**
+     * @param namespace namespace of the secret, null for credentials without one.
+     */
+    static CredentialsWithMetadata<TestCredentials> withId(String namespace, String id) {
+        CredentialsWithMetadata<TestCredentials> credentialsWithMetadata = new CredentialsWithMetadata<>(new TestCredentials(id));
+        if (namespace != null) {
+            credentialsWithMetadata.addMetadata(NamespaceProvider.NAMESPACE_METADATA, namespace);
+        }
+        return credentialsWithMetadata;
+    }
+
+    static CredentialsWithMetadata<TestCredentials> other(String namespace, String name) {
+        return withMetadata(namespace, new Other(namespace + "-" + name));
+    }
+
+    private static CredentialsWithMetadata<TestCredentials> withMetadata(String namespace, TestCredentials credentials) {
+        CredentialsWithMetadata<TestCredentials> credentialsWithMetadata = new CredentialsWithMetadata<>(credentials);
+        credentialsWithMetadata.addMetadata(NamespaceProvider.NAMESPACE_METADATA, namespace);
+        return credentialsWithMetadata;
+    }
+}
@@ -0,0 +1,112 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.apis.CoreV1Api;
+import io.kubernetes.client.openapi.models.V1ListMeta;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import io.kubernetes.client.openapi.models.V1SecretList;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SecretResolverTest {
+
+    private static final SecretSelector SELECTOR = new SecretSelector("app=jenkins", "type!=helm.sh/release.v1");
+
+    private final FakeCoreV1Api api = new FakeCoreV1Api();
+    private final Map<String, V1Secret> resolved = new ConcurrentHashMap<>();
+    private final SecretResolver resolver = new SecretResolver(api, SELECTOR, new SecretPayloadCache(0),
+            secret -> resolved.put(secret.getMetadata().getName(), secret));
+
+    @After
+    public void shutDown() {
+        resolver.shutDown();
+    }
+
+    @Test
+    public void fewPendingSecretsAreReadByName() {
+        api.secrets.add(secret("a", "1"));
+        api.secrets.add(secret("b", "1"));
+        resolver.markPending("ns", "a", "1");
+
+        assertTrue(resolver.resolve(Collections.singleton("ns")));
+
+        assertEquals(Collections.singletonList("a"), api.reads);
+        assertTrue(api.lists.isEmpty());
+        assertEquals(Collections.singleton("a"), resolved.keySet());
+        assertFalse(resolver.hasPending());
+    }
+
+    @Test
+    public void manyPendingSecretsAreListedWithTheSelector() {
+        for (int i = 0; i < 20; i++) {
+            api.secrets.add(secret("s" + i, "1"));
+            resolver.markPending("ns", "s" + i, "1");
+        }
+        // listed secrets that are not pending are not published
+        api.secrets.add(secret("other", "1"));
+        // pending secrets that are not listed anymore are forgotten
+        resolver.markPending("ns", "gone", "1");
+
+        assertTrue(resolver.resolve(Collections.singleton("ns")));
+
+        assertTrue(api.reads.isEmpty());
+        assertFalse(api.lists.isEmpty());
+        for (String[] list : api.lists) {
+            assertEquals("ns", list[0]);
+            assertEquals(SELECTOR.getFieldSelector(), list[1]);
+            assertEquals(SELECTOR.getLabelSelector(), list[2]);
+        }
+        assertEquals(20, resolved.size());
+        assertFalse(resolved.containsKey("other"));
+        assertFalse(resolver.hasPending());
+    }
+
+    private static V1Secret secret(String name, String resourceVersion) {
+        return new V1Secret().metadata(new V1ObjectMeta().namespace("ns").name(name).resourceVersion(resourceVersion));
+    }
+
+    /**
+     * Serves the secrets of one namespace, lists them in pages of 10.
+     */
+    private static class FakeCoreV1Api extends CoreV1Api {
+        private final List<V1Secret> secrets = new ArrayList<>();
+        private final List<String> reads = Collections.synchronizedList(new ArrayList<>());
+        private final List<String[]> lists = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public V1SecretList listNamespacedSecret(String namespace, String pretty, Boolean allowWatchBookmarks,
+                                                 String continueToken, String fieldSelector, String labelSelector,
+                                                 Integer limit, String resourceVersion, String resourceVersionMatch,
+                                                 Integer timeoutSeconds, Boolean watch) {
+            lists.add(new String[]{namespace, fieldSelector, labelSelector});
+            int from = continueToken == null ? 0 : Integer.parseInt(continueToken);
+            int to = Math.min(secrets.size(), from + 10);
+            return new V1SecretList()
+                    .items(new ArrayList<>(secrets.subList(from, to)))
+                    .metadata(new V1ListMeta()._continue(to < secrets.size() ? String.valueOf(to) : null));
+        }
+
+        @Override
+        public V1Secret readNamespacedSecret(String name, String namespace, String pretty, Boolean exact, Boolean export)
+                throws ApiException {
+            reads.add(name);
+            for (V1Secret secret : secrets) {
+                if (secret.getMetadata().getName().equals(name)) {
+                    return secret;
+                }
+            }
+            throw new ApiException(404, "not found");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.alauda.jenkins.plugins.credentials.watch;
+
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1Secret;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SecretSummaryTest {
+
+    @Test
+    public void summariesDropTheData() {
+        V1Secret secret = secret("1");
+        V1Secret summary = SecretSummary.of(secret);
+
+        assertNull(summary.getData());
+        assertEquals(secret.getMetadata(), summary.getMetadata());
+        assertEquals(secret.getType(), summary.getType());
+        assertSame(summary, SecretSummary.of(summary));
+    }
+
+    @Test
+    public void updatesThatOnlyChangeTheResourceVersionHaveTheSameContent() {
+        assertTrue(SecretSummary.sameContent(SecretSummary.of(secret("1")), SecretSummary.of(secret("2"))));
+    }
+
+    @Test
+    public void dataChangesAreDetected() {
+        V1Secret changed = secret("2");
+        changed.putDataItem("password", "other".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(SecretSummary.sameContent(SecretSummary.of(secret("1")), SecretSummary.of(changed)));
+    }
+
+    @Test
+    public void labelAnnotationAndTypeChangesAreDetected() {
+        V1Secret labelChanged = secret("2");
+        labelChanged.getMetadata().putLabelsItem("jenkins.io/credentials-type", "secretText");
+        V1Secret annotationChanged = secret("2");
+        annotationChanged.getMetadata().putAnnotationsItem("jenkins.io/credentials-description", "other");
+        V1Secret typeChanged = secret("2").type("Opaque");
+
+        V1Secret original = SecretSummary.of(secret("1"));
+        assertFalse(SecretSummary.sameContent(original, SecretSummary.of(labelChanged)));
+        assertFalse(SecretSummary.sameContent(original, SecretSummary.of(annotationChanged)));
+        assertFalse(SecretSummary.sameContent(original, SecretSummary.of(typeChanged)));
+    }
+
+    @Test
+    public void digestDoesNotDependOnTheOrderOfEntries() {
+        V1Secret secret = secret("1");
+        Map<String, byte[]> reversed = new LinkedHashMap<>();
+        reversed.put("username", secret.getData().get("username"));
+        reversed.put("password", secret.getData().get("password"));
+        V1Secret reordered = secret("2").data(reversed);
+
+        assertEquals(SecretSummary.digest(secret), SecretSummary.digest(reordered));
+    }
+
+    @Test
+    public void entriesCannotShiftIntoEachOther() {
+        V1Secret secret = secret("1").data(null);
+        secret.putDataItem("ab", "c".getBytes(StandardCharsets.UTF_8));
+        V1Secret shifted = secret("1").data(null);
+        shifted.putDataItem("a", "bc".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(SecretSummary.digest(secret).equals(SecretSummary.digest(shifted)));
+    }
+
+    @Test
+    public void secretsThatAreNotSummariesNeverHaveTheSameContent() {
+        assertFalse(SecretSummary.sameContent(secret("1"), secret("1")));
+        assertFalse(SecretSummary.sameContent(SecretSummary.of(secret("1")), secret("1")));
+        assertFalse(SecretSummary.sameContent(null, SecretSummary.of(secret("1"))));
+    }
+
+    @Test
+    public void restoredSummariesKeepTheirDigest() {
+        SecretSummary summary = (SecretSummary) SecretSummary.of(secret("1"));
+        SecretSummary restored = SecretSummary.restore(new V1Secret().metadata(summary.getMetadata())
+                .type(summary.getType()), summary.getContentDigest());
+
+        assertTrue(SecretSummary.sameContent(summary, restored));
+        assertEquals(summary, restored);
+    }
+
+    private static V1Secret secret(String resourceVersion) {
+        V1Secret secret = new V1Secret()
+                .type("kubernetes.io/basic-auth")
+                .metadata(new V1ObjectMeta()
+                        .namespace("ns")
+                        .name("secret")
+                        .resourceVersion(resourceVersion)
+                        .putLabelsItem("jenkins.io/credentials-sync", "true")
+                        .putAnnotationsItem("jenkins.io/credentials-description", "description"));
+        secret.putDataItem("password", "password".getBytes(StandardCharsets.UTF_8));
+        secret.putDataItem("username", "user".getBytes(StandardCharsets.UTF_8));
+        return secret;
+    }
+}